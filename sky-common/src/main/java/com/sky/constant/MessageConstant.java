@@ -24,5 +24,15 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_SUBMIT_TIMEOUT = "下单超时，请稍后重试";
+    public static final String ITEM_NOT_AVAILABLE = "商品不存在或已删除";
+    public static final String REQUEST_IN_PROGRESS = "请求正在处理中，请勿重复提交";
+    public static final String IDEMPOTENCY_KEY_REUSED = "请求令牌已用于其他请求";
+    public static final String INVALID_CURSOR = "分页游标无效";
+    public static final String REPORT_RANGE_INVALID = "报表日期范围无效，最长为一年";
+    public static final String EXPORT_FORMAT_INVALID = "导出格式无效，仅支持xlsx、csv";
+    public static final String EXPORT_BUSY = "导出任务过多，请稍后再试";
+    public static final String EXPORT_JOB_NOT_FOUND = "导出任务不存在或已过期";
+    public static final String EXPORT_JOB_NOT_READY = "导出任务尚未完成";
 
 }
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * 购物车存储方式：mysql 直接读写shopping_cart表；redis 每个用户一个hash
+     */
+    private String storage = "mysql";
+
+    /**
+     * redis存储时是否异步回写shopping_cart表
+     */
+    private boolean writeBehind = false;
+
+    /**
+     * 每次回写最多处理的用户数
+     */
+    private int writeBehindBatchSize = 200;
+
+}
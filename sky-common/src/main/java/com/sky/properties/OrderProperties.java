@@ -0,0 +1,227 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 订单号生成器节点id，多实例部署时每个实例必须不同（0-1023）
+     */
+    private long workerId;
+
+    /**
+     * 配送费（元）
+     */
+    private BigDecimal deliveryFee = new BigDecimal(6);
+
+    /**
+     * 每份商品的打包费（元）
+     */
+    private int packFeePerItem = 1;
+
+    /**
+     * 菜单价格快照最长存活时间（毫秒），多实例部署时用于兜底刷新其他实例的变更
+     */
+    private long menuSnapshotTtlMillis = 60000;
+
+    /**
+     * 批量流转订单状态时每段处理的订单数
+     */
+    private int bulkChunkSize = 1000;
+
+    /**
+     * 订单状态计数与数据库对账的间隔（毫秒）
+     */
+    private long counterReconcileMillis = 60000;
+
+    /**
+     * 订单详情缓存最多保留的订单数
+     */
+    private long detailCacheMaximumSize = 10000;
+
+    /**
+     * 订单详情缓存时间（秒），多实例部署时其他实例的状态变更最多在该时间后反映到详情
+     */
+    private long detailCacheTtlSeconds = 60;
+
+    /**
+     * 下单批量提交相关配置
+     */
+    private Submit submit = new Submit();
+
+    /**
+     * 下单、支付接口幂等相关配置
+     */
+    private Idempotency idempotency = new Idempotency();
+
+    /**
+     * 超时未付款订单自动取消相关配置
+     */
+    private Timeout timeout = new Timeout();
+
+    /**
+     * 订单号、手机号搜索索引相关配置
+     */
+    private Search search = new Search();
+
+    /**
+     * 已结束订单归档相关配置
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * 订单按月分表相关配置
+     */
+    private Sharding sharding = new Sharding();
+
+    @Data
+    public static class Submit {
+
+        /**
+         * 是否开启批量提交模式，关闭时每次下单单独开启事务写库
+         */
+        private boolean batchEnabled = false;
+
+        /**
+         * 每批最多合并的订单数
+         */
+        private int batchSize = 64;
+
+        /**
+         * 凑批最长等待时间（毫秒）
+         */
+        private long lingerMillis = 5;
+
+        /**
+         * 等待写库的队列容量，队列满时退回单独写库
+         */
+        private int queueCapacity = 2048;
+
+        /**
+         * 下单请求等待写库完成的超时时间（毫秒）
+         */
+        private long timeoutMillis = 3000;
+    }
+
+    @Data
+    public static class Idempotency {
+
+        /**
+         * 幂等键及其结果的保留时间（秒）
+         */
+        private long ttlSeconds = 600;
+
+        /**
+         * 本地缓存最多保留的幂等键数量
+         */
+        private long maximumSize = 100000;
+
+        /**
+         * 是否同时写入redis，多实例部署时开启，保证请求重试落到其他实例时同样生效
+         */
+        private boolean redisEnabled = false;
+
+        /**
+         * 重复请求等待首个请求执行完成的最长时间（毫秒）
+         */
+        private long waitTimeoutMillis = 5000;
+    }
+
+    @Data
+    public static class Timeout {
+
+        /**
+         * 到期任务存放方式：wheel 单实例内存时间轮；redis 多实例共享的redis有序集合
+         */
+        private String store = "wheel";
+
+        /**
+         * 下单后多久未付款自动取消（分钟）
+         */
+        private long paymentMinutes = 15;
+
+        /**
+         * 时间轮每格时长（毫秒）
+         */
+        private long tickMillis = 1000;
+
+        /**
+         * 时间轮槽数
+         */
+        private int wheelSize = 512;
+
+        /**
+         * 每条update语句最多取消的订单数
+         */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Search {
+
+        /**
+         * 是否启用订单号、手机号的三元组索引
+         */
+        private boolean indexEnabled = true;
+
+        /**
+         * 索引最近多少天的订单
+         */
+        private int indexDays = 90;
+
+        /**
+         * 候选订单数超过该值时不使用索引，退回原条件查询
+         */
+        private int maxCandidates = 1000;
+    }
+
+    @Data
+    public static class Archive {
+
+        /**
+         * 是否开启归档，开启前需先执行 sql/orders_archive.sql 创建归档表
+         */
+        private boolean enabled = false;
+
+        /**
+         * 下单超过多少天的已完成、已取消订单归档
+         */
+        private int ageDays = 180;
+
+        /**
+         * 每个事务迁移的订单数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 两批之间的停顿（毫秒），降低对线上库和主从复制的压力
+         */
+        private long pauseMillis = 100;
+    }
+
+    @Data
+    public static class Sharding {
+
+        /**
+         * 是否开启按月分表，开启后订单写入 orders_yyyyMM，与归档互斥
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最早的分表月份（yyyyMM），未限定开始时间的查询从该月开始
+         */
+        private String firstMonth = "202401";
+
+        /**
+         * 订单id中的时间可能晚于下单时间，id时间落在月初该秒数内的订单同时查询上个月的表
+         */
+        private long idGraceSeconds = 60;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.page")
+@Data
+public class PageProperties {
+
+    /**
+     * 是否缓存分页查询的总记录数
+     */
+    private boolean countCacheEnabled = true;
+
+    /**
+     * 总记录数缓存时间（秒），多实例部署时其他实例的写入最多在该时间后反映到总数
+     */
+    private long countCacheTtlSeconds = 30;
+
+    /**
+     * 最多缓存的查询条件数
+     */
+    private long countCacheMaximumSize = 10000;
+
+    /**
+     * 无查询条件时是否使用数据库统计信息中的估算行数作为总记录数
+     */
+    private boolean approximateCount = false;
+
+    /**
+     * 每页最大行数，分页和游标分页请求的每页行数超出时按该值查询
+     */
+    private int maxPageSize = 100;
+}
@@ -0,0 +1,90 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    /**
+     * 营业数据来源：raw 每次查询订单表、用户表聚合；rollup 读取每日汇总表 daily_business_stats；
+     * columnar 统计内存中的订单事实列式存储
+     */
+    private String source = "raw";
+
+    /**
+     * 汇总表增量写入的间隔（毫秒），期间的变更在内存中合并后一次写入
+     */
+    private long rollupFlushMillis = 1000;
+
+    /**
+     * 汇总表为空时启动回填的天数
+     */
+    private int rollupBackfillDays = 366;
+
+    /**
+     * 菜品销量排名来源：sql 每次查询订单明细聚合；redis 按天维护的有序集合；columnar 订单事实列式存储
+     */
+    private String salesRanking = "sql";
+
+    /**
+     * redis销量排名保留的天数，更早的日期范围查询订单明细
+     */
+    private int salesRankingDays = 366;
+
+    /**
+     * 订单事实列式存储加载的天数，更早的日期范围仍查询数据库
+     */
+    private int columnarDays = 366;
+
+    /**
+     * 是否按天缓存今天之前的报表数据
+     */
+    private boolean dayCacheEnabled = true;
+
+    /**
+     * 每种报表数据缓存的最大天数
+     */
+    private long dayCacheMaximumSize = 1000;
+
+    /**
+     * 缓存过期时间（秒），0表示不过期，多实例部署时其他实例上的订单流转不会失效本实例的缓存，需要设置
+     */
+    private long dayCacheTtlSeconds = 0;
+
+    /**
+     * 异步导出
+     */
+    private Export export = new Export();
+
+    public boolean isRollup() {
+        return "rollup".equals(source);
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * 导出文件的暂存目录
+         */
+        private String stagingDir = System.getProperty("java.io.tmpdir") + "/sky-report-export";
+
+        /**
+         * 同时执行的导出任务数
+         */
+        private int workers = 2;
+
+        /**
+         * 等待执行的导出任务数上限，超出时拒绝提交
+         */
+        private int queueCapacity = 20;
+
+        /**
+         * 导出完成后文件保留的时间（分钟），过期后删除
+         */
+        private long retentionMinutes = 60;
+    }
+}
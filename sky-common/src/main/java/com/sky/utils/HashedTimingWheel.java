@@ -0,0 +1,215 @@
+package com.sky.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮
+ *
+ * 时间轮由wheelSize个槽组成，工作线程每隔tickMillis推进一格，处理当前槽中到期的任务。
+ * 超过一圈的任务记录剩余圈数，每经过一次减一。新增任务先放入无锁队列，由工作线程在下一次推进时放入对应的槽，
+ * 取消任务只做标记，因此添加和取消都是O(1)且不需要加锁。
+ * 同一格内到期的任务一次性交给回调处理，便于调用方批量处理。
+ *
+ * @param <K> 任务标识，同一标识重复添加时以最后一次为准
+ */
+@Slf4j
+public class HashedTimingWheel<K> {
+
+    /**
+     * 每次推进最多转移的新任务数，避免大量任务同时加入时长时间阻塞推进
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickMillis;
+
+    private final int mask;
+
+    private final List<LinkedList<Entry<K>>> buckets;
+
+    private final Queue<Entry<K>> pending = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentMap<K, Entry<K>> entries = new ConcurrentHashMap<>();
+
+    private final Consumer<List<K>> expiryHandler;
+
+    private final Thread worker;
+
+    private volatile boolean running;
+
+    private long startTime;
+
+    private long tick;
+
+    /**
+     * @param name 工作线程名称
+     * @param tickMillis 每格时长（毫秒）
+     * @param wheelSize 槽数，向上取整为2的幂
+     * @param expiryHandler 到期回调，在工作线程中执行
+     */
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize, Consumer<List<K>> expiryHandler) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis必须大于0");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize必须在1到2^30之间");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<>());
+        }
+        this.expiryHandler = expiryHandler;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        startTime = System.currentTimeMillis();
+        running = true;
+        worker.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(tickMillis * 2);
+    }
+
+    /**
+     * 添加任务
+     *
+     * @param key 任务标识
+     * @param deadlineMillis 到期时间戳（毫秒），已过期的任务在下一次推进时到期
+     */
+    public void schedule(K key, long deadlineMillis) {
+        Entry<K> entry = new Entry<>(key, deadlineMillis);
+        Entry<K> old = entries.put(key, entry);
+        if (old != null) {
+            old.cancelled = true;
+        }
+        pending.add(entry);
+    }
+
+    /**
+     * 取消任务
+     *
+     * @param key
+     * @return 任务存在且尚未到期时返回true
+     */
+    public boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * 尚未到期的任务数
+     *
+     * @return
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startTime + (tick + 1) * tickMillis;
+            long sleep = deadline - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+
+            transferPending();
+            List<K> expired = expire(buckets.get((int) (tick & mask)));
+            tick++;
+
+            if (!expired.isEmpty()) {
+                try {
+                    expiryHandler.accept(expired);
+                } catch (Throwable e) {
+                    log.error("时间轮到期任务处理失败，数量: {}", expired.size(), e);
+                }
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Entry<K> entry = pending.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.cancelled) {
+                continue;
+            }
+            long calculated = (entry.deadline - startTime) / tickMillis;
+            entry.remainingRounds = (calculated - tick) / buckets.size();
+            // 已经过期的任务放入当前槽，本次推进即到期
+            long ticks = Math.max(calculated, tick);
+            buckets.get((int) (ticks & mask)).add(entry);
+        }
+    }
+
+    private List<K> expire(LinkedList<Entry<K>> bucket) {
+        List<K> expired = new ArrayList<>();
+        Iterator<Entry<K>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Entry<K> entry = iterator.next();
+            if (entry.cancelled) {
+                iterator.remove();
+            } else if (entry.remainingRounds <= 0) {
+                iterator.remove();
+                if (entries.remove(entry.key, entry)) {
+                    expired.add(entry.key);
+                }
+            } else {
+                entry.remainingRounds--;
+            }
+        }
+        return expired;
+    }
+
+    private static class Entry<K> {
+
+        private final K key;
+
+        private final long deadline;
+
+        private long remainingRounds;
+
+        private volatile boolean cancelled;
+
+        Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.sky.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 订单号生成器（Snowflake风格）
+ *
+ * 号码结构：41位毫秒时间戳（相对EPOCH） | 10位节点id | 12位毫秒内序列号
+ * 时间戳与序列号合并存放在一个AtomicLong中，通过CAS推进，无锁；
+ * 同一毫秒内序列号用尽或系统时钟回拨时，直接在上一次的时间戳基础上继续递增（借用后续毫秒），
+ * 短时间的突发和小幅回拨不会阻塞等待。借用最多领先系统时钟 maxDriftMillis 毫秒，超出后等待时钟追上，
+ * 保证号码中的时间戳不会偏离实际时间太远（分表按号码中的时间路由）。
+ * 生成的号码单节点内严格递增、整体大致按时间有序。
+ */
+public class OrderNumberGenerator {
+
+    /**
+     * 起始时间 2024-01-01 00:00:00 (UTC+8)
+     */
+    public static final long EPOCH = 1704038400000L;
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int WORKER_ID_SHIFT = SEQUENCE_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+
+    /**
+     * 默认最多借用的后续毫秒数
+     */
+    public static final long DEFAULT_MAX_DRIFT_MILLIS = 1000;
+
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final long workerId;
+
+    private final long maxDriftMillis;
+
+    /**
+     * 高位为相对时间戳，低12位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public OrderNumberGenerator(long workerId) {
+        this(workerId, DEFAULT_MAX_DRIFT_MILLIS);
+    }
+
+    /**
+     * @param workerId
+     * @param maxDriftMillis 号码中的时间戳最多领先系统时钟的毫秒数
+     */
+    public OrderNumberGenerator(long workerId, long maxDriftMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0到" + MAX_WORKER_ID + "之间");
+        }
+        if (maxDriftMillis < 0) {
+            throw new IllegalArgumentException("maxDriftMillis不能小于0");
+        }
+        this.workerId = workerId;
+        this.maxDriftMillis = maxDriftMillis;
+    }
+
+    /**
+     * 生成下一个订单id
+     *
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = currentTimestamp();
+
+            long next;
+            if (now > lastTimestamp) {
+                // 进入新的毫秒，序列号归零
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // 同一毫秒（或时钟回拨），序列号加一
+                next = current + 1;
+            } else if (lastTimestamp + 1 - now <= maxDriftMillis) {
+                // 序列号用尽，借用下一毫秒
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            } else {
+                // 借用已达上限（持续超出每毫秒容量或时钟大幅回拨），等待时钟追上
+                LockSupport.parkNanos(WAIT_NANOS);
+                continue;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << WORKER_ID_SHIFT)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 生成下一个订单号
+     *
+     * @return
+     */
+    public String nextNumber() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 解析订单id中的时间戳（毫秒）
+     *
+     * @param id
+     * @return
+     */
+    public static long extractTimestamp(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    private long currentTimestamp() {
+        return currentTimeMillis() - EPOCH;
+    }
+
+    /**
+     * 系统时钟（毫秒）
+     *
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -27,4 +27,10 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //游标分页：上一页返回的游标，第一页不传
+    private String cursor;
+
+    //游标分页：是否同时统计总记录数
+    private boolean withTotal;
+
 }
@@ -0,0 +1,55 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总，增量更新时各字段表示增量
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //日期
+    private LocalDate statDate;
+
+    //营业额（分）
+    private long turnover;
+
+    //订单总数
+    private int totalOrders;
+
+    //待付款订单数
+    private int pendingPaymentOrders;
+
+    //待接单订单数
+    private int toBeConfirmedOrders;
+
+    //已接单订单数
+    private int confirmedOrders;
+
+    //派送中订单数
+    private int deliveryInProgressOrders;
+
+    //已完成订单数
+    private int completedOrders;
+
+    //已取消订单数
+    private int cancelledOrders;
+
+    //新增用户数
+    private int newUsers;
+
+    //更新时间
+    private LocalDateTime updateTime;
+}
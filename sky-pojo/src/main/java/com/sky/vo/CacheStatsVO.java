@@ -0,0 +1,35 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 缓存命中统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsVO implements Serializable {
+    //缓存名称
+    private String name;
+
+    //当前缓存条目数
+    private Long size;
+
+    //命中次数
+    private Long hitCount;
+
+    //未命中次数
+    private Long missCount;
+
+    //命中率
+    private Double hitRate;
+
+    //因容量或过期被淘汰的条目数
+    private Long evictionCount;
+}
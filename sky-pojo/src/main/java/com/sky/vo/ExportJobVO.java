@@ -0,0 +1,47 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 运营数据报表导出任务
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportJobVO implements Serializable {
+
+    //任务id
+    private String id;
+
+    //开始日期
+    private LocalDate begin;
+
+    //结束日期
+    private LocalDate end;
+
+    //导出格式 xlsx csv
+    private String format;
+
+    //任务状态 1排队中 2导出中 3已完成 4失败
+    private Integer status;
+
+    //进度，0-100
+    private Integer progress;
+
+    //失败原因
+    private String message;
+
+    //提交时间
+    private LocalDateTime createTime;
+
+    //完成时间
+    private LocalDateTime finishTime;
+}
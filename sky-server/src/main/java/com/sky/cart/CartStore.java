@@ -0,0 +1,58 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * 购物车存储，按 sky.cart.storage 配置选择实现
+ */
+public interface CartStore {
+
+    /**
+     * 若购物车中已存在相同商品（菜品+口味或套餐），数量加一
+     * 实现也可以在不存在时直接完成插入
+     * @param shoppingCart
+     * @return 已完成加购返回true，需要调用方补全商品信息后insert返回false
+     */
+    boolean increment(ShoppingCart shoppingCart);
+
+    /**
+     * 新增一条购物车数据
+     * @param shoppingCart
+     */
+    void insert(ShoppingCart shoppingCart);
+
+    /**
+     * 商品数量减一，减到0时删除
+     * @param shoppingCart
+     */
+    void decrement(ShoppingCart shoppingCart);
+
+    /**
+     * 查询用户购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    void clear(Long userId);
+
+    /**
+     * 清空多个用户的购物车
+     * @param userIds
+     */
+    default void clearBatch(List<Long> userIds) {
+        userIds.forEach(this::clear);
+    }
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    void insertBatch(List<ShoppingCart> shoppingCartList);
+}
@@ -0,0 +1,78 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 基于shopping_cart表的购物车存储
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "storage", havingValue = "mysql", matchIfMissing = true)
+public class MysqlCartStore implements CartStore {
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    /**
+     * 单条语句完成加购：按菜品/套餐当前信息插入，已存在则数量加一
+     * 依赖shopping_cart上的唯一键uk_user_item，连续点击不会产生重复行，也不会丢失累加
+     *
+     * @param shoppingCart
+     * @return
+     */
+    public boolean increment(ShoppingCart shoppingCart) {
+        ShoppingCart cart = ShoppingCart.builder()
+                .userId(shoppingCart.getUserId())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .createTime(LocalDateTime.now())
+                .build();
+
+        int rows = cart.getDishId() != null
+                ? shoppingCartMapper.upsertDish(cart)
+                : shoppingCartMapper.upsertSetmeal(cart);
+        return rows > 0;
+    }
+
+    public void insert(ShoppingCart shoppingCart) {
+        shoppingCartMapper.insert(shoppingCart);
+    }
+
+    /**
+     * 单条语句原子减一，减到0后再删除该行
+     * 删除只针对此刻数量仍为0的行，期间被并发加购的商品不会被删除；查询购物车时忽略数量为0的行
+     *
+     * @param shoppingCart
+     */
+    public void decrement(ShoppingCart shoppingCart) {
+        if (shoppingCartMapper.decrementNumber(shoppingCart) > 0) {
+            shoppingCartMapper.deleteEmpty(shoppingCart);
+        }
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .build();
+        return shoppingCartMapper.list(shoppingCart);
+    }
+
+    public void clear(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+
+    public void clearBatch(List<Long> userIds) {
+        shoppingCartMapper.deleteByUserIds(userIds);
+    }
+
+    public void insertBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
+}
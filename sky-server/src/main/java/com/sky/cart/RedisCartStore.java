@@ -0,0 +1,164 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.properties.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于redis hash的购物车存储
+ *
+ * cart:{userId}      field为商品标识（菜品id+口味 或 套餐id），value为数量，通过HINCRBY原子增减
+ * cart_item:{userId} field同上，value为商品名称、图片、单价等信息的json
+ * 开启回写时，发生变化的用户id记录在 cart:dirty 集合中，由定时任务异步同步到shopping_cart表
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "storage", havingValue = "redis")
+@Slf4j
+public class RedisCartStore implements CartStore {
+
+    public static final String CART_KEY = "cart:";
+    public static final String CART_ITEM_KEY = "cart_item:";
+    public static final String DIRTY_KEY = "cart:dirty";
+
+    /**
+     * 商品已存在时数量加一，返回加一后的数量；不存在返回0
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+            "  if ARGV[2] ~= '' then redis.call('sadd', KEYS[2], ARGV[2]) end " +
+            "  return redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "end " +
+            "return 0", Long.class);
+
+    /**
+     * 写入商品信息并增加数量
+     */
+    private static final DefaultRedisScript<Long> INSERT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hsetnx', KEYS[2], ARGV[1], ARGV[2]) " +
+            "if ARGV[4] ~= '' then redis.call('sadd', KEYS[3], ARGV[4]) end " +
+            "return redis.call('hincrby', KEYS[1], ARGV[1], ARGV[3])", Long.class);
+
+    /**
+     * 数量减一，减到0时同时删除商品信息
+     */
+    private static final DefaultRedisScript<Long> DECREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end " +
+            "local n = redis.call('hincrby', KEYS[1], ARGV[1], -1) " +
+            "if n <= 0 then " +
+            "  redis.call('hdel', KEYS[1], ARGV[1]) " +
+            "  redis.call('hdel', KEYS[2], ARGV[1]) " +
+            "end " +
+            "if ARGV[2] ~= '' then redis.call('sadd', KEYS[3], ARGV[2]) end " +
+            "return n", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CartProperties cartProperties;
+
+    public boolean increment(ShoppingCart shoppingCart) {
+        Long number = stringRedisTemplate.execute(INCREMENT_SCRIPT,
+                Arrays.asList(cartKey(shoppingCart.getUserId()), DIRTY_KEY),
+                field(shoppingCart), dirtyMember(shoppingCart.getUserId()));
+        return number != null && number > 0;
+    }
+
+    public void insert(ShoppingCart shoppingCart) {
+        Integer number = shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber();
+        Long userId = shoppingCart.getUserId();
+
+        ShoppingCart item = ShoppingCart.builder()
+                .name(shoppingCart.getName())
+                .image(shoppingCart.getImage())
+                .dishId(shoppingCart.getDishId())
+                .setmealId(shoppingCart.getSetmealId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .amount(shoppingCart.getAmount())
+                .createTime(shoppingCart.getCreateTime())
+                .build();
+
+        stringRedisTemplate.execute(INSERT_SCRIPT,
+                Arrays.asList(cartKey(userId), itemKey(userId), DIRTY_KEY),
+                field(shoppingCart), JSON.toJSONString(item), String.valueOf(number), dirtyMember(userId));
+    }
+
+    public void decrement(ShoppingCart shoppingCart) {
+        Long userId = shoppingCart.getUserId();
+        stringRedisTemplate.execute(DECREMENT_SCRIPT,
+                Arrays.asList(cartKey(userId), itemKey(userId), DIRTY_KEY),
+                field(shoppingCart), dirtyMember(userId));
+    }
+
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> numbers = stringRedisTemplate.opsForHash().entries(cartKey(userId));
+        if (numbers == null || numbers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(itemKey(userId));
+
+        List<ShoppingCart> list = new ArrayList<>(numbers.size());
+        numbers.forEach((field, number) -> {
+            Object json = items.get(field);
+            if (json == null) {
+                log.warn("购物车商品信息缺失，用户: {}, 商品: {}", userId, field);
+                return;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject(json.toString(), ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf(number.toString()));
+            list.add(shoppingCart);
+        });
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    public void clear(Long userId) {
+        stringRedisTemplate.delete(Arrays.asList(cartKey(userId), itemKey(userId)));
+        if (cartProperties.isWriteBehind()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+        }
+    }
+
+    public void insertBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartList.forEach(this::insert);
+    }
+
+    private String dirtyMember(Long userId) {
+        return cartProperties.isWriteBehind() ? userId.toString() : "";
+    }
+
+    /**
+     * 商品标识：菜品为 dish:{dishId}:{口味}，套餐为 setmeal:{setmealId}
+     *
+     * @param shoppingCart
+     * @return
+     */
+    private String field(ShoppingCart shoppingCart) {
+        if (shoppingCart.getDishId() != null) {
+            String flavor = shoppingCart.getDishFlavor() == null ? "" : shoppingCart.getDishFlavor();
+            return "dish:" + shoppingCart.getDishId() + ":" + flavor;
+        }
+        return "setmeal:" + shoppingCart.getSetmealId();
+    }
+
+    public static String cartKey(Long userId) {
+        return CART_KEY + userId;
+    }
+
+    public static String itemKey(Long userId) {
+        return CART_ITEM_KEY + userId;
+    }
+}
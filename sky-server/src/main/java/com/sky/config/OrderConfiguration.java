@@ -0,0 +1,24 @@
+package com.sky.config;
+
+import com.sky.properties.OrderProperties;
+import com.sky.utils.OrderNumberGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置类，用于创建订单相关组件
+ */
+@Configuration
+@Slf4j
+public class OrderConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OrderNumberGenerator orderNumberGenerator(OrderProperties orderProperties) {
+        log.info("开始创建订单号生成器，节点id: {}", orderProperties.getWorkerId());
+
+        return new OrderNumberGenerator(orderProperties.getWorkerId());
+    }
+}
@@ -3,6 +3,7 @@ package com.sky.config;
 import com.sky.interceptor.JwtTokenAdminInterceptor;
 import com.sky.interceptor.JwtTokenUserInterceptor;
 import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.OrderProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -35,6 +36,9 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
     @Autowired
     private JwtTokenUserInterceptor jwtTokenUserInterceptor;
 
+    @Autowired
+    private OrderProperties orderProperties;
+
     /**
      * 注册自定义拦截器
      *
@@ -107,8 +111,8 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
 
         // 创建一个消息转换器对象
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
-        // 需要为消息转换器设置一个对象转换器，可以将Java对象序列化为json数据
-        converter.setObjectMapper(new JacksonObjectMapper());
+        // 需要为消息转换器设置一个对象转换器，可以将Java对象序列化为json数据，开启订单分表时Long序列化为字符串
+        converter.setObjectMapper(new JacksonObjectMapper(orderProperties.getSharding().isEnabled()));
         // 将自己的消息转换器加入容器中
         converters.add(0, converter);
     }
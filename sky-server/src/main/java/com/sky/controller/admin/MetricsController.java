@@ -0,0 +1,44 @@
+package com.sky.controller.admin;
+
+import com.sky.order.OrderDetailCache;
+import com.sky.report.ReportDayCache;
+import com.sky.result.Result;
+import com.sky.vo.CacheStatsVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/metrics")
+@Api(tags = "运行指标相关接口")
+@Slf4j
+public class MetricsController {
+
+    @Autowired
+    private OrderDetailCache orderDetailCache;
+
+    @Autowired
+    private ReportDayCache reportDayCache;
+
+    /**
+     * 查询缓存命中统计
+     * @return
+     */
+    @GetMapping("/caches")
+    @ApiOperation("查询缓存命中统计")
+    public Result<List<CacheStatsVO>> caches() {
+
+        List<CacheStatsVO> list = new ArrayList<>();
+        list.add(orderDetailCache.stats());
+        list.addAll(reportDayCache.stats());
+
+        return Result.success(list);
+    }
+}
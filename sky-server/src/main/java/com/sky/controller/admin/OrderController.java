@@ -4,6 +4,7 @@ import com.sky.dto.OrdersCancelDTO;
 import com.sky.dto.OrdersConfirmDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersRejectionDTO;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -39,6 +40,22 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 订单搜索（游标分页）
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    @GetMapping("/conditionSearch/cursor")
+    @ApiOperation("订单搜索（游标分页）")
+    public Result<CursorPageResult> conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+
+        log.info("订单搜索（游标分页）: {}", ordersPageQueryDTO);
+
+        CursorPageResult cursorPageResult = orderService.conditionSearchByCursor(ordersPageQueryDTO);
+
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 订单状态统计
      * @return
@@ -2,6 +2,7 @@ package com.sky.controller.admin;
 
 import com.sky.result.Result;
 import com.sky.service.ReportService;
+import com.sky.vo.ExportJobVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
@@ -12,9 +13,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 
@@ -105,14 +109,64 @@ public class ReportController {
 
     /**
      * 导出运营数据报表
+     * @param begin 不传时导出最近30天
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("导出运营数据报表")
-    public void export(HttpServletResponse response) {
+    public void export(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            HttpServletResponse response) {
+
+        log.info("导出运营数据报表: {}, {}", begin, end);
+
+        reportService.exportBusinessData(begin, end, response);
+    }
+
+    /**
+     * 提交运营数据报表异步导出任务
+     * @param begin
+     * @param end
+     * @param format xlsx或csv，默认xlsx
+     * @return
+     */
+    @PostMapping("/export/jobs")
+    @ApiOperation("提交运营数据报表导出任务")
+    public Result<ExportJobVO> submitExportJob(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            String format) {
+
+        log.info("提交运营数据报表导出任务: {}, {}, {}", begin, end, format);
+
+        return Result.success(reportService.submitExportJob(begin, end, format));
+    }
+
+    /**
+     * 查询导出任务的状态和进度
+     * @param id
+     * @return
+     */
+    @GetMapping("/export/jobs/{id}")
+    @ApiOperation("查询运营数据报表导出任务")
+    public Result<ExportJobVO> getExportJob(@PathVariable String id) {
+        return Result.success(reportService.getExportJob(id));
+    }
+
+    /**
+     * 下载导出任务生成的文件
+     * @param id
+     * @param request
+     * @param response
+     */
+    @GetMapping("/export/jobs/{id}/file")
+    @ApiOperation("下载运营数据报表导出文件")
+    public void downloadExportJob(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) {
 
-        log.info("导出运营数据报表");
+        log.info("下载运营数据报表导出文件: {}", id);
 
-        reportService.exportBusinessData(response);
+        reportService.downloadExportJob(id, request, response);
     }
 }
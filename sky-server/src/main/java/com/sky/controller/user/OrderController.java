@@ -2,6 +2,8 @@ package com.sky.controller.user;
 
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
+import com.sky.order.OrderIdempotencyGuard;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -24,18 +26,24 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private OrderIdempotencyGuard orderIdempotencyGuard;
+
     /**
      * 用户下单
+     * @param idempotencyKey
      * @param ordersSubmitDTO
      * @return
      */
     @PostMapping("/submit")
     @ApiOperation("用户下单")
-    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO) {
+    public Result<OrderSubmitVO> submit(@RequestHeader(value = OrderIdempotencyGuard.HEADER, required = false) String idempotencyKey,
+                                        @RequestBody OrdersSubmitDTO ordersSubmitDTO) {
 
-        log.info("用户下单: {}", ordersSubmitDTO);
+        log.info("用户下单: {}, 幂等键: {}", ordersSubmitDTO, idempotencyKey);
 
-        OrderSubmitVO orderSubmitVO = orderService.submitOrder(ordersSubmitDTO);
+        OrderSubmitVO orderSubmitVO = orderIdempotencyGuard.execute("submit", idempotencyKey, ordersSubmitDTO, OrderSubmitVO.class,
+                () -> orderService.submitOrder(ordersSubmitDTO));
 
         return Result.success(orderSubmitVO);
     }
@@ -43,14 +51,17 @@ public class OrderController {
     /**
      * 订单支付
      *
+     * @param idempotencyKey
      * @param ordersPaymentDTO
      * @return
      */
     @PutMapping("/payment")
     @ApiOperation("订单支付")
-    public Result<OrderPaymentVO> payment(@RequestBody OrdersPaymentDTO ordersPaymentDTO) throws Exception {
-        log.info("订单支付：{}", ordersPaymentDTO);
-        OrderPaymentVO orderPaymentVO = orderService.payment(ordersPaymentDTO);
+    public Result<OrderPaymentVO> payment(@RequestHeader(value = OrderIdempotencyGuard.HEADER, required = false) String idempotencyKey,
+                                          @RequestBody OrdersPaymentDTO ordersPaymentDTO) throws Exception {
+        log.info("订单支付：{}, 幂等键: {}", ordersPaymentDTO, idempotencyKey);
+        OrderPaymentVO orderPaymentVO = orderIdempotencyGuard.execute("payment", idempotencyKey, ordersPaymentDTO, OrderPaymentVO.class,
+                () -> orderService.payment(ordersPaymentDTO));
         log.info("生成预支付交易单：{}", orderPaymentVO);
         return Result.success(orderPaymentVO);
     }
@@ -73,6 +84,25 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 历史订单查询（游标分页）
+     * @param cursor
+     * @param pageSize
+     * @param status
+     * @param withTotal
+     * @return
+     */
+    @GetMapping("/historyOrders/cursor")
+    @ApiOperation("历史订单查询（游标分页）")
+    public Result<CursorPageResult> cursorPage(String cursor, int pageSize, Integer status, boolean withTotal) {
+
+        log.info("历史订单查询（游标分页）: {}, {}, {}, {}", cursor, pageSize, status, withTotal);
+
+        CursorPageResult cursorPageResult = orderService.cursorQuery4User(cursor, pageSize, status, withTotal);
+
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 查询订单详情
      * @param id
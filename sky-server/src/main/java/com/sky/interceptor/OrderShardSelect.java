@@ -0,0 +1,225 @@
+package com.sky.interceptor;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+
+/**
+ * 跨多个月份分表的查询语句改写
+ *
+ * orders替换为各分表 union all 的派生表时，紧跟在orders之后的where条件复制到每个分支；
+ * 条件之后是 order by ... limit 时（没有group by），排序和行数限制也复制到每个分支，
+ * 分支的行数取 偏移量 + 每页行数；for update 等加锁子句也复制到每个分支，锁定的是分表中的行。
+ * 派生表外层保留原条件和排序分页，结果与改写前一致，
+ * 但每个分表先按自己的索引过滤、截断，不再把整张分表物化。
+ * 复制到分支中的占位符同时复制对应的参数映射。
+ */
+final class OrderShardSelect {
+
+    private static final String BRANCH_LIMIT = "shardBranchLimit";
+
+    private final Configuration configuration;
+
+    private final BoundSql boundSql;
+
+    private final String sql;
+
+    private final String lower;
+
+    private final List<ParameterMapping> mappings;
+
+    private final StringBuilder rewritten = new StringBuilder();
+
+    private final List<ParameterMapping> rewrittenMappings = new ArrayList<>();
+
+    /**
+     * 已复制到rewritten的位置，及其之前的占位符个数
+     */
+    private int copied;
+
+    private int copiedMappings;
+
+    private int branchLimits;
+
+    OrderShardSelect(Configuration configuration, BoundSql boundSql) {
+        this.configuration = configuration;
+        this.boundSql = boundSql;
+        this.sql = boundSql.getSql();
+        this.lower = sql.toLowerCase(Locale.ROOT);
+        this.mappings = boundSql.getParameterMappings();
+    }
+
+    /**
+     * 改写语句，新的参数映射写回boundSql
+     *
+     * @param matcher 匹配orders表及别名的TABLE_PATTERN
+     * @param tables 各月份分表名
+     * @return 改写后的sql
+     */
+    String rewrite(Matcher matcher, List<String> tables) {
+        while (matcher.find()) {
+            String alias = matcher.group(2) == null ? " orders" : matcher.group(2);
+            copyTo(matcher.start());
+            rewritten.append(matcher.group(1));
+
+            int conditionStart = -1;
+            int conditionEnd = skipSpace(matcher.end());
+            if (keyword(conditionEnd, "where")) {
+                conditionStart = conditionEnd + "where".length();
+                conditionEnd = scan(conditionStart, "group", "order", "limit", "having", "for", "union", "lock");
+            }
+            int tailStart = skipSpace(conditionEnd);
+            int limitStart = -1;
+            int tailEnd = tailStart;
+            if (keyword(tailStart, "order") || keyword(tailStart, "limit")) {
+                tailEnd = scan(tailStart, "for", "union", "lock", "having");
+                limitStart = keyword(tailStart, "limit") ? tailStart : scan(tailStart, "limit");
+                if (limitStart >= tailEnd) {
+                    limitStart = -1;
+                }
+            }
+            int lockStart = skipSpace(tailEnd);
+            String lock = keyword(lockStart, "for") || keyword(lockStart, "lock")
+                    ? sql.substring(lockStart, scan(lockStart, "union")).trim() : null;
+
+            List<ParameterMapping> conditionMappings = conditionStart < 0
+                    ? new ArrayList<>() : mappings.subList(placeholders(0, conditionStart),
+                    placeholders(0, conditionEnd));
+            rewritten.append('(');
+            for (int i = 0; i < tables.size(); i++) {
+                rewritten.append(i == 0 ? "(" : " union all (")
+                        .append("select * from ").append(tables.get(i)).append(alias);
+                if (conditionStart >= 0) {
+                    rewritten.append(" where").append(sql, conditionStart, conditionEnd);
+                    rewrittenMappings.addAll(conditionMappings);
+                }
+                if (limitStart >= 0) {
+                    rewritten.append(' ').append(sql, tailStart, limitStart);
+                    appendBranchLimit(limitStart, tailEnd);
+                }
+                if (lock != null) {
+                    rewritten.append(' ').append(lock);
+                }
+                rewritten.append(')');
+            }
+            rewritten.append(')').append(alias);
+            copied = matcher.end();
+        }
+        copyTo(sql.length());
+        return rewritten.toString();
+    }
+
+    List<ParameterMapping> getParameterMappings() {
+        return rewrittenMappings;
+    }
+
+    /**
+     * limit ? 原样复制；limit ?, ?（PageHelper的偏移量和行数）合并为一个参数：偏移量 + 行数
+     */
+    private void appendBranchLimit(int limitStart, int limitEnd) {
+        int from = placeholders(0, limitStart);
+        int count = placeholders(limitStart, limitEnd);
+        String limit = sql.substring(limitStart, limitEnd);
+        if (count == 0 && limit.contains(",")) {
+            String[] values = limit.substring("limit".length()).split(",");
+            long rows = Long.parseLong(values[0].trim()) + Long.parseLong(values[1].trim());
+            rewritten.append("limit ").append(rows);
+        } else if (count == 2) {
+            long rows = ((Number) value(mappings.get(from))).longValue() + ((Number) value(mappings.get(from + 1))).longValue();
+            String name = BRANCH_LIMIT + branchLimits++;
+            boundSql.setAdditionalParameter(name, rows);
+            rewritten.append("limit ?");
+            rewrittenMappings.add(new ParameterMapping.Builder(configuration, name, Long.class).build());
+        } else {
+            rewritten.append(limit);
+            rewrittenMappings.addAll(mappings.subList(from, from + count));
+        }
+    }
+
+    /**
+     * 与DefaultParameterHandler相同的方式取参数值
+     */
+    private Object value(ParameterMapping mapping) {
+        String property = mapping.getProperty();
+        if (boundSql.hasAdditionalParameter(property)) {
+            return boundSql.getAdditionalParameter(property);
+        }
+        Object parameter = boundSql.getParameterObject();
+        if (parameter == null || configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+            return parameter;
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameter);
+        return metaObject.getValue(property);
+    }
+
+    private void copyTo(int end) {
+        int count = placeholders(copied, end);
+        rewritten.append(sql, copied, end);
+        rewrittenMappings.addAll(mappings.subList(copiedMappings, copiedMappings + count));
+        copiedMappings += count;
+        copied = end;
+    }
+
+    /**
+     * 从from开始找第一个处于同一层括号内的关键字，遇到不匹配的右括号或语句结束时停止
+     */
+    private int scan(int from, String... keywords) {
+        int depth = 0;
+        for (int i = from; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = lower.indexOf(c, i + 1);
+                if (i < 0) {
+                    return lower.length();
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth-- == 0) {
+                    return i;
+                }
+            } else if (depth == 0) {
+                for (String keyword : keywords) {
+                    if (keyword(i, keyword)) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return lower.length();
+    }
+
+    private int placeholders(int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            char c = lower.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int close = lower.indexOf(c, i + 1);
+                i = close < 0 ? to : close;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean keyword(int index, String keyword) {
+        return lower.startsWith(keyword, index)
+                && (index == 0 || !Character.isLetterOrDigit(lower.charAt(index - 1)) && lower.charAt(index - 1) != '_')
+                && (index + keyword.length() == lower.length() || !Character.isLetterOrDigit(lower.charAt(index + keyword.length()))
+                && lower.charAt(index + keyword.length()) != '_');
+    }
+
+    private int skipSpace(int index) {
+        while (index < lower.length() && Character.isWhitespace(lower.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
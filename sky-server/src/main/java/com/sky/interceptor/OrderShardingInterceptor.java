@@ -0,0 +1,274 @@
+package com.sky.interceptor;
+
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderShards;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * mybatis拦截器，订单按月分表时把OrderMapper语句中的orders表改写为对应的月份分表
+ *
+ * 查询：按参数中的下单时间范围（begin/start/since ~ end/orderTimeLT/before，或分页查询条件）只访问重叠的月份，
+ * 按id或订单号查询时访问id所在的月份，其余查询访问全部分表；多个月份以 union all 合并，
+ * orders之后的条件和排序分页下推到每个分表（见 {@link OrderShardSelect}）；
+ * 新增：按下单时间写入对应月份，批量新增时按月份拆分为多次执行；
+ * 修改、删除：按参数中的订单id所在月份执行，id分布在多个月份时拆分为多次执行并累加影响行数。
+ * 未开启分表时不做任何处理。
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class OrderShardingInterceptor implements Interceptor {
+
+    private static final String NAMESPACE = OrderMapper.class.getName() + ".";
+
+    /**
+     * from/join/into/update/逗号之后的orders表，以及可选的表别名
+     */
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "(\\bfrom\\s+|\\bjoin\\s+|\\binto\\s+|\\bupdate\\s+|,\\s*)" + OrderShards.TABLE + "\\b(?![.\\w])"
+                    + "(\\s+(?:as\\s+)?(?!(?:where|order|group|limit|set|union|on|left|right|inner|join|for)\\b)\\w+)?",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 修改语句拆分执行时，当前执行的目标月份
+     */
+    private static final ThreadLocal<YearMonth> ROUTE = new ThreadLocal<>();
+
+    @Autowired
+    private OrderShards orderShards;
+
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!orderShards.isEnabled()) {
+            return invocation.proceed();
+        }
+        if (invocation.getTarget() instanceof Executor) {
+            return update(invocation);
+        }
+        return prepare(invocation);
+    }
+
+    private Object update(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        Object parameter = args[1];
+        if (!mappedStatement.getId().startsWith(NAMESPACE)
+                || !TABLE_PATTERN.matcher(mappedStatement.getBoundSql(parameter).getSql()).find()) {
+            return invocation.proceed();
+        }
+
+        Map<YearMonth, Object> routes = mappedStatement.getSqlCommandType() == SqlCommandType.INSERT
+                ? routeInsert(parameter) : routeUpdate(parameter);
+        // 分表模式下id由程序分配，执行后还原，避免被驱动返回的自增主键覆盖
+        List<Orders> inserted = insertedOrders(parameter);
+        List<Long> ids = inserted.stream().map(Orders::getId).collect(Collectors.toList());
+
+        int rows = 0;
+        try {
+            for (Map.Entry<YearMonth, Object> route : routes.entrySet()) {
+                ROUTE.set(route.getKey());
+                args[1] = route.getValue();
+                rows += (Integer) invocation.proceed();
+            }
+        } finally {
+            ROUTE.remove();
+            args[1] = parameter;
+            for (int i = 0; i < inserted.size(); i++) {
+                inserted.get(i).setId(ids.get(i));
+            }
+        }
+        return rows;
+    }
+
+    private Object prepare(Invocation invocation) throws Throwable {
+        StatementHandler statementHandler = (StatementHandler) invocation.getTarget();
+        MetaObject metaObject = SystemMetaObject.forObject(statementHandler);
+        MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+        if (!mappedStatement.getId().startsWith(NAMESPACE)) {
+            return invocation.proceed();
+        }
+
+        BoundSql boundSql = statementHandler.getBoundSql();
+        boolean select = mappedStatement.getSqlCommandType() == SqlCommandType.SELECT;
+        List<YearMonth> months;
+        if (ROUTE.get() != null) {
+            months = Collections.singletonList(ROUTE.get());
+        } else if (select) {
+            months = routeSelect(boundSql.getParameterObject());
+        } else {
+            return invocation.proceed();
+        }
+
+        if (select && months.size() > 1) {
+            // 条件、排序和行数限制下推到每个分表，复制的占位符需要同时复制参数映射
+            OrderShardSelect shardSelect = new OrderShardSelect(mappedStatement.getConfiguration(), boundSql);
+            List<String> tables = months.stream().map(orderShards::table).collect(Collectors.toList());
+            metaObject.setValue("delegate.boundSql.sql", shardSelect.rewrite(TABLE_PATTERN.matcher(boundSql.getSql()), tables));
+            metaObject.setValue("delegate.boundSql.parameterMappings", shardSelect.getParameterMappings());
+        } else {
+            metaObject.setValue("delegate.boundSql.sql", rewrite(boundSql.getSql(), orderShards.table(months.get(0)), select));
+        }
+        return invocation.proceed();
+    }
+
+    /**
+     * 把orders替换为单个分表，查询时保留原别名
+     */
+    private String rewrite(String sql, String table, boolean select) {
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        StringBuffer rewritten = new StringBuffer();
+        while (matcher.find()) {
+            String alias = matcher.group(2);
+            if (alias == null) {
+                alias = select ? " " + OrderShards.TABLE : "";
+            }
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group(1) + table + alias));
+        }
+        matcher.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    private List<YearMonth> routeSelect(Object parameter) {
+        if (parameter instanceof Long) {
+            return orderShards.monthsOfId((Long) parameter);
+        }
+        if (isNumber(parameter)) {
+            return orderShards.monthsOfId(Long.parseLong((String) parameter));
+        }
+        if (parameter instanceof LocalDateTime) {
+            return orderShards.months((LocalDateTime) parameter, null);
+        }
+        if (!(parameter instanceof Map)) {
+            return orderShards.all();
+        }
+
+        Map<?, ?> map = (Map<?, ?>) parameter;
+        Object id = value(map, "id");
+        if (id instanceof Long) {
+            return orderShards.monthsOfId((Long) id);
+        }
+        Object number = value(map, "orderNumber");
+        if (isNumber(number)) {
+            return orderShards.monthsOfId(Long.parseLong((String) number));
+        }
+        Object query = value(map, "query");
+        if (query instanceof OrdersPageQueryDTO) {
+            OrdersPageQueryDTO dto = (OrdersPageQueryDTO) query;
+            return orderShards.months(dto.getBeginTime(), dto.getEndTime());
+        }
+        return orderShards.months(time(map, "begin", "start", "since"), time(map, "end", "orderTimeLT", "before"));
+    }
+
+    private Map<YearMonth, Object> routeInsert(Object parameter) {
+        Map<YearMonth, Object> routes = new LinkedHashMap<>();
+        if (parameter instanceof Orders) {
+            routes.put(orderShards.route((Orders) parameter), parameter);
+            return routes;
+        }
+
+        Map<YearMonth, List<Orders>> groups = new LinkedHashMap<>();
+        for (Orders orders : insertedOrders(parameter)) {
+            groups.computeIfAbsent(orderShards.route(orders), month -> new ArrayList<>()).add(orders);
+        }
+        Object list = value((Map<?, ?>) parameter, "ordersList");
+        groups.forEach((month, group) -> routes.put(month, replace((Map<?, ?>) parameter, list, group)));
+        return routes;
+    }
+
+    private Map<YearMonth, Object> routeUpdate(Object parameter) {
+        Map<YearMonth, Object> routes = new LinkedHashMap<>();
+        Orders orders = parameter instanceof Orders ? (Orders) parameter
+                : parameter instanceof Map && value((Map<?, ?>) parameter, "orders") instanceof Orders
+                ? (Orders) value((Map<?, ?>) parameter, "orders") : null;
+        if (orders != null && orders.getId() != null) {
+            orderShards.monthsOfId(orders.getId()).forEach(month -> routes.put(month, parameter));
+            return routes;
+        }
+
+        Object ids = parameter instanceof Map ? value((Map<?, ?>) parameter, "ids") : null;
+        if (ids instanceof Collection) {
+            Map<YearMonth, List<Long>> groups = new LinkedHashMap<>();
+            for (Object id : (Collection<?>) ids) {
+                for (YearMonth month : orderShards.monthsOfId((Long) id)) {
+                    groups.computeIfAbsent(month, m -> new ArrayList<>()).add((Long) id);
+                }
+            }
+            groups.forEach((month, group) -> routes.put(month, replace((Map<?, ?>) parameter, ids, group)));
+            return routes;
+        }
+
+        orderShards.all().forEach(month -> routes.put(month, parameter));
+        return routes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Orders> insertedOrders(Object parameter) {
+        if (parameter instanceof Orders) {
+            return Collections.singletonList((Orders) parameter);
+        }
+        Object list = parameter instanceof Map ? value((Map<?, ?>) parameter, "ordersList") : null;
+        return list instanceof List ? (List<Orders>) list : Collections.emptyList();
+    }
+
+    /**
+     * 复制参数，把其中的original（包括param1等别名）替换为replacement
+     */
+    private static Map<String, Object> replace(Map<?, ?> parameter, Object original, Object replacement) {
+        Map<String, Object> copy = new MapperMethod.ParamMap<>();
+        parameter.forEach((key, value) -> copy.put((String) key, value == original ? replacement : value));
+        return copy;
+    }
+
+    /**
+     * 分表模式下订单号即订单id
+     */
+    private static boolean isNumber(Object value) {
+        return value instanceof String && ((String) value).matches("\\d{1,18}");
+    }
+
+    private static LocalDateTime time(Map<?, ?> map, String... keys) {
+        for (String key : keys) {
+            Object value = value(map, key);
+            if (value instanceof LocalDateTime) {
+                return (LocalDateTime) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ParamMap取不存在的键会抛出异常，先判断
+     */
+    private static Object value(Map<?, ?> map, String key) {
+        return map.containsKey(key) ? map.get(key) : null;
+    }
+}
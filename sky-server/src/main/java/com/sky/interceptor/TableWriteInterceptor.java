@@ -0,0 +1,41 @@
+package com.sky.interceptor;
+
+import com.sky.page.TableVersions;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * mybatis拦截器，记录insert/update/delete语句写入的表，更新表数据版本号
+ */
+@Component
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class TableWriteInterceptor implements Interceptor {
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "^\\s*(?:insert\\s+(?:ignore\\s+)?into|replace\\s+into|update|delete\\s+from)\\s+`?(\\w+)`?",
+            Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private TableVersions tableVersions;
+
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        String sql = mappedStatement.getBoundSql(invocation.getArgs()[1]).getSql();
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        if (matcher.find()) {
+            tableVersions.bump(matcher.group(1).toLowerCase());
+        }
+        return result;
+    }
+}
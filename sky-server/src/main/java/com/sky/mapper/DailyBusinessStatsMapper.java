@@ -0,0 +1,41 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 查询日期范围内的汇总数据
+     * @param begin
+     * @param end
+     * @return 没有数据的日期不返回
+     */
+    @Select("select * from daily_business_stats where stat_date between #{begin} and #{end}")
+    List<DailyBusinessStats> getByDateRange(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+
+    /**
+     * 把增量累加到对应日期，该日期没有数据时插入
+     * @param delta
+     */
+    void increment(DailyBusinessStats delta);
+
+    /**
+     * 以重新计算的数据覆盖对应日期
+     * @param stats
+     */
+    void save(DailyBusinessStats stats);
+
+    /**
+     * 汇总表中的天数
+     * @return
+     */
+    @Select("select count(*) from daily_business_stats")
+    int count();
+}
@@ -2,6 +2,7 @@ package com.sky.mapper;
 
 import com.sky.entity.OrderDetail;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
@@ -26,7 +27,30 @@ public interface OrderDetailMapper {
      * 根据订单ID批量查询订单菜品信息
      *
      * @param orderIds 订单ID列表
+     * @param archived 是否同时查询归档表
      * @return 按订单ID分组的菜品信息
      */
-    List<OrderDetail> getDishesByOrderIds(List<Long> orderIds);
+    List<OrderDetail> getDishesByOrderIds(@Param("orderIds") List<Long> orderIds, @Param("archived") boolean archived);
+
+    /**
+     * 把订单的明细复制到归档表
+     * @param orderIds
+     * @return
+     */
+    int archiveByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    /**
+     * 根据订单id批量删除明细
+     * @param orderIds
+     * @return
+     */
+    int deleteByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    /**
+     * 在归档表中根据订单id查询明细
+     * @param orderId
+     * @return
+     */
+    @Select("select * from order_detail_archive where order_id = #{orderId}")
+    List<OrderDetail> getArchivedByOrderId(Long orderId);
 }
@@ -3,12 +3,17 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
+import com.sky.order.OrderCursor;
+import com.sky.order.OrderSearchFilter;
 import io.swagger.models.auth.In;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,6 +28,12 @@ public interface OrderMapper {
      */
     void insert(Orders orders);
 
+    /**
+     * 批量插入订单数据，生成的主键回填到每个订单
+     * @param ordersList
+     */
+    void insertBatch(List<Orders> ordersList);
+
     /**
      * 根据订单号查询订单
      * @param orderNumber
@@ -36,15 +47,57 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 订单状态流转：仅当订单当前状态在sources中时修改，由受影响行数判断是否成功
+     * @param orders 订单id、目标状态以及随状态一起修改的字段
+     * @param sources 允许的原状态
+     * @param refund 是否把已支付的订单标记为退款
+     * @param recordSource 是否记录流转前的状态，之后由getTransitionSource读出
+     * @return
+     */
+    int transition(@Param("orders") Orders orders, @Param("sources") List<Integer> sources, @Param("refund") boolean refund,
+                   @Param("recordSource") boolean recordSource);
+
     @Select("select * from orders where number = #{orderNumber} and user_id= #{userId}")
     Orders getByNumberAndUserId(String orderNumber, Long userId);
 
     /**
      * 历史订单查询
      * @param ordersPageQueryDTO
+     * @param search 订单号、手机号在搜索索引中命中的候选订单，为null时直接按模糊条件查询
+     * @return
+     */
+    Page<Orders> pageQuery(@Param("query") OrdersPageQueryDTO ordersPageQueryDTO, @Param("search") OrderSearchFilter search);
+
+    /**
+     * 游标分页查询，按下单时间、id倒序取游标之后的limit条订单
+     * @param ordersPageQueryDTO
+     * @param search 订单号、手机号在搜索索引中命中的候选订单，可以为null
+     * @param cursor 上一页最后一条订单的位置，第一页传null
+     * @param limit
      * @return
      */
-    Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
+    List<Orders> cursorQuery(@Param("query") OrdersPageQueryDTO ordersPageQueryDTO, @Param("search") OrderSearchFilter search,
+                             @Param("cursor") OrderCursor cursor, @Param("limit") int limit);
+
+    /**
+     * 统计符合查询条件的订单数
+     * @param ordersPageQueryDTO
+     * @param search 订单号、手机号在搜索索引中命中的候选订单，可以为null
+     * @return
+     */
+    Long countByQuery(@Param("query") OrdersPageQueryDTO ordersPageQueryDTO, @Param("search") OrderSearchFilter search);
+
+    /**
+     * 按id顺序分段查询下单时间不早于begin的订单的订单号和手机号
+     * @param begin
+     * @param afterId
+     * @param limit
+     * @return
+     */
+    @Select("select id, number, phone, order_time from orders where order_time >= #{begin} and id > #{afterId} " +
+            "order by id limit #{limit}")
+    List<Orders> getSearchFields(@Param("begin") LocalDateTime begin, @Param("afterId") Long afterId, @Param("limit") int limit);
 
     /**
      * 根据id查询订单
@@ -54,6 +107,23 @@ public interface OrderMapper {
     @Select("select * from orders where id = #{id}")
     Orders getById(Long id);
 
+    /**
+     * 修改支付状态（及结账时间）：仅当订单处于给定状态且支付状态为fromPayStatus时修改
+     * @param orders 订单id、新的支付状态和结账时间
+     * @param status 订单状态
+     * @param fromPayStatus 原支付状态
+     * @return
+     */
+    int updatePayStatus(@Param("orders") Orders orders, @Param("status") Integer status, @Param("fromPayStatus") Integer fromPayStatus);
+
+    /**
+     * 读取transition在有多个原状态时记录的流转前状态，需要在同一事务中紧接着成功的transition调用
+     * @return
+     */
+    @Select("select @order_transition_source")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    Integer getTransitionSource();
+
     /**
      * 订单状态统计
      * @param status
@@ -62,6 +132,22 @@ public interface OrderMapper {
     @Select("select count(id) from orders where status = #{status}")
     Integer countStatus(Integer status);
 
+    /**
+     * 按状态分组统计订单数
+     * @param begin 下单时间下限，为null时统计全部订单
+     * @return 每行包含 status、number 两列
+     */
+    @MapKey("")
+    List<Map<String, Object>> countGroupByStatus(@Param("begin") LocalDateTime begin);
+
+    /**
+     * 查询下单时间不早于给定时间的订单id
+     * @param begin
+     * @return
+     */
+    @Select("select id from orders where order_time >= #{begin}")
+    List<Long> getIdsByOrderTimeGE(LocalDateTime begin);
+
     /**
      * 根据订单状态和下单时间查询订单
      * @param status
@@ -71,6 +157,89 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{orderTimeLT}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTimeLT);
 
+    /**
+     * 查询指定状态的订单id和下单时间
+     * @param status
+     * @return
+     */
+    @Select("select id, order_time from orders where status = #{status}")
+    List<Orders> getIdAndOrderTimeByStatus(Integer status);
+
+    /**
+     * 批量取消仍处于指定状态的订单，已被其他操作改变状态的订单不受影响
+     * @param ids
+     * @param fromStatus
+     * @param toStatus 取消后的状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return 实际取消的订单数
+     */
+    int cancelBatch(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus, @Param("toStatus") Integer toStatus,
+                    @Param("cancelReason") String cancelReason, @Param("cancelTime") LocalDateTime cancelTime);
+
+    /**
+     * 按id顺序分段查询指定状态且下单时间早于给定时间的订单id
+     * @param status
+     * @param orderTimeLT
+     * @param afterId 上一段最后一个id，第一段传0
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and order_time < #{orderTimeLT} and id > #{afterId} " +
+            "order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(@Param("status") Integer status, @Param("orderTimeLT") LocalDateTime orderTimeLT,
+                                            @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 批量修改订单状态，仅修改仍处于原状态的订单
+     * @param ids
+     * @param fromStatus
+     * @param toStatus
+     * @return 实际修改的订单数
+     */
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus,
+                          @Param("toStatus") Integer toStatus);
+
+    /**
+     * 分段查询可归档的订单id：已完成、已取消且下单时间早于before
+     * @param before
+     * @param afterId 上一段最后一个订单id
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders where status in (5, 6) and order_time < #{before} and id > #{afterId} " +
+            "order by id limit #{limit}")
+    List<Long> getArchivableIds(@Param("before") LocalDateTime before, @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 把订单复制到归档表
+     * @param ids
+     * @return
+     */
+    int archiveByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 根据id批量删除订单
+     * @param ids
+     * @return
+     */
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 在归档表中根据id查询订单
+     * @param id
+     * @return
+     */
+    @Select("select * from orders_archive where id = #{id}")
+    Orders getArchivedById(Long id);
+
+    /**
+     * 创建订单月份分表，表结构与orders相同
+     * @param table
+     */
+    @Update("create table if not exists ${table} like orders")
+    void createShardTable(@Param("table") String table);
+
     /**
      * 根据动态条件统计营业额数据
      * @param map
@@ -89,12 +258,45 @@ public interface OrderMapper {
     Integer countByDateAndStatus(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("status") Integer status);
 
     /**
-     * 根据动态条件查询销量前十
+     * 按下单日期分组统计订单数、各状态订单数和已完成订单的金额
      * @param start
      * @param end
+     * @return 没有订单的日期不返回，不包含新增用户数
+     */
+    List<DailyBusinessStats> statsGroupByDate(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * 根据id批量查询订单的下单时间、金额和状态
+     * @param ids
+     * @return
+     */
+    List<Orders> getOrderTimeAndAmountByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 按id顺序分批查询下单时间不早于since的订单的id、下单时间、金额和状态，包括已归档的订单
+     * @param since
+     * @param afterId 上一批最后一个订单的id
+     * @param limit
      * @return
      */
-    List<GoodsSalesDTO> getSalesTop(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<Orders> getFactsSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 根据动态条件查询销量排名，销量相同时按菜品名称排序
+     * @param start
+     * @param end
+     * @param limit 返回的菜品数
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("limit") int limit);
+
+    /**
+     * 按下单日期、菜品名称分组统计已完成订单的销量
+     * @param start
+     * @param end
+     * @return 每行包含date、name、number
+     */
+    List<Map<String, Object>> salesGroupByDate(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     Double sumByMap(Map map);
 }
@@ -36,6 +36,12 @@ public interface ShoppingCartMapper {
     @Delete("delete from shopping_cart where user_id = #{userId}")
     void deleteByUserId(Long userId);
 
+    /**
+     * 删除多个用户的购物车数据
+     * @param userIds
+     */
+    void deleteByUserIds(List<Long> userIds);
+
     /**
      * 根据ID删除某条购物车数据
      * @param id
@@ -44,4 +50,32 @@ public interface ShoppingCartMapper {
     void deleteById(Long id);
 
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 菜品加入购物车：不存在时按菜品当前信息插入，已存在时数量加一（依赖唯一键uk_user_item）
+     * @param shoppingCart
+     * @return 影响行数，插入为1，累加为2，菜品不存在为0
+     */
+    int upsertDish(ShoppingCart shoppingCart);
+
+    /**
+     * 套餐加入购物车：不存在时按套餐当前信息插入，已存在时数量加一（依赖唯一键uk_user_item）
+     * @param shoppingCart
+     * @return 影响行数，插入为1，累加为2，套餐不存在为0
+     */
+    int upsertSetmeal(ShoppingCart shoppingCart);
+
+    /**
+     * 数量大于0时原子减一，可能减到0
+     * @param shoppingCart
+     * @return
+     */
+    int decrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 删除数量已减到0的商品
+     * @param shoppingCart
+     * @return
+     */
+    int deleteEmpty(ShoppingCart shoppingCart);
 }
@@ -0,0 +1,16 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+@Mapper
+public interface TableStatsMapper {
+
+    /**
+     * 查询数据库统计信息中的估算行数
+     * @param table
+     * @return
+     */
+    @Select("select table_rows from information_schema.tables where table_schema = database() and table_name = #{table}")
+    Long getApproximateRows(String table);
+}
@@ -1,11 +1,14 @@
 package com.sky.mapper;
 
 import com.sky.entity.User;
+import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserMapper {
@@ -51,4 +54,14 @@ public interface UserMapper {
     @Select("SELECT COUNT(*) FROM user WHERE create_time BETWEEN #{start} AND #{end}")
     int countNewUsers(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
+    /**
+     * 一次查询统计开始时间之前的累计用户数和时间段内每天的新增用户数
+     *
+     * @param start 开始日期的起始时间
+     * @param end 结束日期的结束时间
+     * @return 每行包含 date、number；date为null的一行是开始时间之前的累计用户数，没有新增用户的日期不返回
+     */
+    @MapKey("")
+    List<Map<String, Object>> countNewUsersGroupByDate(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
 }
@@ -0,0 +1,27 @@
+package com.sky.order;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 一次批量状态流转的执行结果
+ */
+@Data
+@Builder
+public class BulkTransitionResult {
+
+    /**
+     * 实际修改的订单数
+     */
+    private long rows;
+
+    /**
+     * 执行的分段数
+     */
+    private int chunks;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsedMillis;
+}
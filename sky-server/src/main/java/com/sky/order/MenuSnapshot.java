@@ -0,0 +1,75 @@
+package com.sky.order;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 菜单价格快照（不可变），价格单位为分，只包含起售中的菜品和套餐
+ */
+public final class MenuSnapshot {
+
+    private final Map<Long, Long> dishPrices;
+
+    private final Map<Long, Long> setmealPrices;
+
+    private final long version;
+
+    private final long createdAt;
+
+    MenuSnapshot(List<Dish> dishes, List<Setmeal> setmeals, long version) {
+        Map<Long, Long> dishPrices = new HashMap<>(dishes.size() * 2);
+        dishes.forEach(dish -> dishPrices.put(dish.getId(), toCents(dish.getPrice())));
+
+        Map<Long, Long> setmealPrices = new HashMap<>(setmeals.size() * 2);
+        setmeals.forEach(setmeal -> setmealPrices.put(setmeal.getId(), toCents(setmeal.getPrice())));
+
+        this.dishPrices = Collections.unmodifiableMap(dishPrices);
+        this.setmealPrices = Collections.unmodifiableMap(setmealPrices);
+        this.version = version;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 菜品单价，不存在或已停售返回null
+     * @param dishId
+     * @return
+     */
+    public Long dishPrice(Long dishId) {
+        return dishPrices.get(dishId);
+    }
+
+    /**
+     * 套餐单价，不存在或已停售返回null
+     * @param setmealId
+     * @return
+     */
+    public Long setmealPrice(Long setmealId) {
+        return setmealPrices.get(setmealId);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    public static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
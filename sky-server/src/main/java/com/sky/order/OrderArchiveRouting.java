@@ -0,0 +1,88 @@
+package com.sky.order;
+
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.Orders;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单查询的归档表路由
+ *
+ * 供mapper xml在OGNL表达式中以 @com.sky.order.OrderArchiveRouting@reaches(...) 调用，
+ * 判断查询的下单时间范围是否可能包含已归档的订单，是则查询线上表与归档表的 union all，否则只查线上表。
+ * 归档边界只与当前日期和配置的天数有关，多实例部署时各实例无需同步状态。
+ */
+public final class OrderArchiveRouting {
+
+    private static volatile boolean enabled;
+
+    private static volatile int ageDays;
+
+    private OrderArchiveRouting() {
+    }
+
+    static void configure(boolean enabled, int ageDays) {
+        OrderArchiveRouting.ageDays = ageDays;
+        OrderArchiveRouting.enabled = enabled;
+    }
+
+    /**
+     * 归档边界，下单时间早于该时间的已结束订单可能已被归档；未开启归档时返回null
+     *
+     * @return
+     */
+    public static LocalDateTime boundary() {
+        if (!enabled) {
+            return null;
+        }
+        return LocalDate.now().minusDays(ageDays).atStartOfDay();
+    }
+
+    /**
+     * 下单时间下限为begin的查询是否需要合并归档表
+     *
+     * @param begin 为null表示不限
+     * @return
+     */
+    public static boolean reaches(LocalDateTime begin) {
+        LocalDateTime boundary = boundary();
+        return boundary != null && (begin == null || begin.isBefore(boundary));
+    }
+
+    /**
+     * 订单分页查询是否需要合并归档表
+     *
+     * 用户查询自己的历史订单时按时间范围判断；管理端查询只有明确指定早于归档边界的开始时间时才合并，
+     * 未指定时间的日常查询只访问线上表
+     *
+     * @param query
+     * @return
+     */
+    public static boolean reachesQuery(OrdersPageQueryDTO query) {
+        if (query.getUserId() != null) {
+            return reaches(query.getBeginTime());
+        }
+        return query.getBeginTime() != null && reaches(query.getBeginTime());
+    }
+
+    /**
+     * 查询到的订单中是否有可能已被归档的，用于决定其明细是否合并查询归档表
+     *
+     * @param ordersList
+     * @return
+     */
+    public static boolean reachesOrders(List<Orders> ordersList) {
+        LocalDateTime boundary = boundary();
+        if (boundary == null) {
+            return false;
+        }
+        for (Orders orders : ordersList) {
+            if (orders.getOrderTime() == null || orders.getOrderTime().isBefore(boundary)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
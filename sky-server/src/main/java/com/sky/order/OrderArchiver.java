@@ -0,0 +1,124 @@
+package com.sky.order;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 已结束订单归档
+ *
+ * 把下单时间早于归档边界的已完成、已取消订单连同明细迁移到 orders_archive、order_detail_archive，
+ * 线上表只保留近期订单，索引和热数据能常驻缓冲池。按id顺序（keyset）分批，
+ * 每批在一个事务中 insert ... select 到归档表后删除线上表的行，读者要么看到线上的行要么看到归档的行。
+ * 已完成、已取消是终态，迁移期间不会再被修改。
+ */
+@Component
+@Slf4j
+public class OrderArchiver {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        OrderProperties.Archive archive = orderProperties.getArchive();
+        boolean enabled = archive.isEnabled();
+        if (enabled && orderProperties.getSharding().isEnabled()) {
+            // 按月分表后历史月份的表本身就是冷数据，不再归档
+            log.warn("订单已开启按月分表，忽略归档配置");
+            enabled = false;
+        }
+        OrderArchiveRouting.configure(enabled, archive.getAgeDays());
+    }
+
+    /**
+     * 归档边界之前的已结束订单全部迁移到归档表
+     *
+     * @return 归档的订单数
+     */
+    public long archive() {
+        LocalDateTime boundary = OrderArchiveRouting.boundary();
+        if (boundary == null) {
+            return 0;
+        }
+        OrderProperties.Archive archive = orderProperties.getArchive();
+        long start = System.currentTimeMillis();
+        long archived = 0;
+        long afterId = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Long> ids = orderMapper.getArchivableIds(boundary, afterId, archive.getBatchSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer rows = transactionTemplate.execute(status -> {
+                orderDetailMapper.archiveByOrderIds(ids);
+                orderDetailMapper.deleteByOrderIds(ids);
+                int moved = orderMapper.archiveByIds(ids);
+                orderMapper.deleteByIds(ids);
+                return moved;
+            });
+            archived += rows == null ? 0 : rows;
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < archive.getBatchSize()) {
+                break;
+            }
+            pause(archive.getPauseMillis());
+        }
+
+        log.info("订单归档完成，下单时间早于: {}，归档订单数: {}，耗时: {}ms", boundary, archived, System.currentTimeMillis() - start);
+        return archived;
+    }
+
+    /**
+     * 在归档表中查询订单
+     *
+     * @param id
+     * @return 未开启归档或不存在时返回null
+     */
+    public Orders getById(Long id) {
+        return OrderArchiveRouting.boundary() != null ? orderMapper.getArchivedById(id) : null;
+    }
+
+    /**
+     * 在归档表中查询订单明细
+     *
+     * @param orderId
+     * @return
+     */
+    public List<OrderDetail> getDetails(Long orderId) {
+        return OrderArchiveRouting.boundary() != null
+                ? orderDetailMapper.getArchivedByOrderId(orderId) : Collections.emptyList();
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
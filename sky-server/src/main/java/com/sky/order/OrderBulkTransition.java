@@ -0,0 +1,69 @@
+package com.sky.order;
+
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单状态批量流转
+ *
+ * 按id顺序（keyset）分段遍历符合条件的订单，每段只取id，再用一条 update ... where status = ? and id in (...)
+ * 完成整段的状态修改。每段单独提交，内存占用与积压量无关，也不会长时间持有大量行锁。
+ */
+@Component
+@Slf4j
+public class OrderBulkTransition {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    /**
+     * 把下单时间早于orderTimeLT且处于fromStatus的订单改为toStatus
+     *
+     * @param fromStatus
+     * @param toStatus
+     * @param orderTimeLT
+     * @return
+     */
+    public BulkTransitionResult transition(Integer fromStatus, Integer toStatus, LocalDateTime orderTimeLT) {
+        int chunkSize = orderProperties.getBulkChunkSize();
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        int chunks = 0;
+        long afterId = 0;
+
+        while (true) {
+            List<Long> ids = orderMapper.getIdsByStatusAndOrderTimeLT(fromStatus, orderTimeLT, afterId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            int updated = orderMapper.updateStatusByIds(ids, fromStatus, toStatus);
+            orderEvents.bulkTransitioned(ids, fromStatus, toStatus, updated);
+            rows += updated;
+            chunks++;
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+
+        BulkTransitionResult result = BulkTransitionResult.builder()
+                .rows(rows)
+                .chunks(chunks)
+                .elapsedMillis(System.currentTimeMillis() - start)
+                .build();
+        log.info("订单状态批量流转 {} -> {}，下单时间早于: {}，结果: {}", fromStatus, toStatus, orderTimeLT, result);
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * 订单列表游标，记录上一页最后一条订单的下单时间和id
+ *
+ * 对外是不透明的字符串：base64url("下单时间毫秒:id")
+ */
+@Data
+@AllArgsConstructor
+public class OrderCursor {
+
+    private LocalDateTime orderTime;
+
+    private Long id;
+
+    /**
+     * 以订单位置生成游标
+     *
+     * @param orders
+     * @return
+     */
+    public static String encode(Orders orders) {
+        long millis = orders.getOrderTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String raw = millis + ":" + orders.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空时返回null表示第一页
+     *
+     * @param cursor
+     * @return
+     */
+    public static OrderCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new OrderCursor(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new OrderBusinessException(MessageConstant.INVALID_CURSOR);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.sky.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sky.properties.OrderProperties;
+import com.sky.vo.CacheStatsVO;
+import com.sky.vo.OrderVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 订单详情缓存
+ *
+ * 按订单id缓存组装好的OrderVO（订单及明细），订单状态发生流转时失效
+ */
+@Component
+public class OrderDetailCache implements OrderEventListener {
+
+    public static final String NAME = "orderDetail";
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private Cache<Long, OrderVO> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(orderProperties.getDetailCacheMaximumSize())
+                .expireAfterWrite(orderProperties.getDetailCacheTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询订单详情，未命中时由loader查询并放入缓存
+     *
+     * @param id
+     * @param loader 订单不存在时返回null，不会被缓存
+     * @return
+     */
+    public OrderVO get(Long id, Function<Long, OrderVO> loader) {
+        return cache.get(id, loader);
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        invalidate(orderId);
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        orderIds.forEach(this::invalidate);
+    }
+
+    /**
+     * 立即失效，处于事务中时提交后再失效一次，避免提交前被其他线程以旧数据重新加载
+     *
+     * @param orderId
+     */
+    public void invalidate(Long orderId) {
+        cache.invalidate(orderId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(orderId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public CacheStatsVO stats() {
+        CacheStats stats = cache.stats();
+        return CacheStatsVO.builder()
+                .name(NAME)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .build();
+    }
+}
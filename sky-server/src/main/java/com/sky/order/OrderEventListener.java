@@ -0,0 +1,42 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+
+import java.util.List;
+
+/**
+ * 订单事件监听，订单写库成功后由OrderEvents回调
+ *
+ * 回调在业务线程中同步执行，实现类应避免耗时操作，抛出的异常不会影响业务流程
+ */
+public interface OrderEventListener {
+
+    /**
+     * 新订单已写入
+     *
+     * @param orders
+     */
+    default void onCreated(Orders orders) {
+    }
+
+    /**
+     * 单个订单状态已流转
+     *
+     * @param orderId
+     * @param fromStatus
+     * @param toStatus
+     */
+    default void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+    }
+
+    /**
+     * 一批订单状态已流转
+     *
+     * @param orderIds 参与流转的订单id，其中可能有在流转前已被其他操作改变状态、实际未修改的订单
+     * @param fromStatus
+     * @param toStatus
+     * @param rows 实际修改的订单数，等于orderIds.size()时说明全部修改成功
+     */
+    default void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单事件分发，把订单的新增和状态流转通知给所有OrderEventListener
+ */
+@Component
+@Slf4j
+public class OrderEvents {
+
+    @Autowired(required = false)
+    private List<OrderEventListener> listeners = Collections.emptyList();
+
+    public void created(Orders orders) {
+        for (OrderEventListener listener : listeners) {
+            try {
+                listener.onCreated(orders);
+            } catch (RuntimeException e) {
+                log.error("订单新增事件处理失败: {}", orders.getId(), e);
+            }
+        }
+    }
+
+    public void transitioned(Long orderId, Integer fromStatus, Integer toStatus) {
+        for (OrderEventListener listener : listeners) {
+            try {
+                listener.onTransition(orderId, fromStatus, toStatus);
+            } catch (RuntimeException e) {
+                log.error("订单状态流转事件处理失败: {}, {} -> {}", orderId, fromStatus, toStatus, e);
+            }
+        }
+    }
+
+    public void bulkTransitioned(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        for (OrderEventListener listener : listeners) {
+            try {
+                listener.onBulkTransition(orderIds, fromStatus, toStatus, rows);
+            } catch (RuntimeException e) {
+                log.error("订单批量状态流转事件处理失败: {} -> {}, 数量: {}", fromStatus, toStatus, orderIds.size(), e);
+            }
+        }
+    }
+}
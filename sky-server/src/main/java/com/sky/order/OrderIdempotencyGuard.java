@@ -0,0 +1,238 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 下单、支付接口幂等控制
+ *
+ * 客户端在请求头 Idempotency-Key 中携带请求令牌，同一用户同一接口同一令牌只执行一次：
+ * 执行结果在本地缓存（可选同时写入redis）中保留一段时间，重试请求直接返回保存的结果；
+ * 首个请求尚未执行完时，并发到达的重复请求等待其结果，而不是再执行一遍。
+ * 执行失败的结果不保留，客户端可以用同一令牌重试。
+ * 令牌与请求参数的摘要一起保存，同一令牌携带不同的请求参数时拒绝执行，不会返回另一个请求的结果。
+ */
+@Component
+@Slf4j
+public class OrderIdempotencyGuard {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String KEY_PREFIX = "idempotent:";
+
+    /**
+     * redis中保存的请求参数摘要和结果，只有摘要时表示请求正在执行
+     */
+    private static final String HASH = "hash";
+
+    private static final String RESULT = "result";
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private Cache<String, Execution> results;
+
+    private final ConcurrentMap<String, Execution> inflight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        OrderProperties.Idempotency idempotency = orderProperties.getIdempotency();
+        results = Caffeine.newBuilder()
+                .maximumSize(idempotency.getMaximumSize())
+                .expireAfterWrite(idempotency.getTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 幂等执行
+     *
+     * @param scope 接口标识
+     * @param idempotencyKey 客户端传入的幂等键，为空时不做幂等控制直接执行
+     * @param request 请求参数，同一幂等键携带不同的请求参数时拒绝执行
+     * @param type 结果类型
+     * @param action 实际业务逻辑
+     * @return
+     */
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> type, Callable<T> action) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return call(action);
+        }
+
+        String key = KEY_PREFIX + scope + ":" + BaseContext.getCurrentId() + ":" + idempotencyKey.trim();
+        String hash = DigestUtils.md5DigestAsHex(JSON.toJSONString(request).getBytes(StandardCharsets.UTF_8));
+
+        Execution cached = results.getIfPresent(key);
+        if (cached != null) {
+            log.info("重复请求，直接返回已保存的结果: {}", key);
+            return type.cast(cached.check(key, hash).future.join());
+        }
+
+        Execution execution = new Execution(hash);
+        Execution existing = inflight.putIfAbsent(key, execution);
+        if (existing != null) {
+            log.info("重复请求，等待首个请求执行完成: {}", key);
+            return type.cast(await(existing.check(key, hash).future));
+        }
+
+        boolean remoteClaimed = false;
+        try {
+            // 抢到执行权之前，首个请求可能刚好执行完
+            cached = results.getIfPresent(key);
+            if (cached != null) {
+                Object result = cached.check(key, hash).future.join();
+                execution.future.complete(result);
+                return type.cast(result);
+            }
+
+            if (orderProperties.getIdempotency().isRedisEnabled()) {
+                Execution remote = claimRemote(key, hash, type);
+                if (remote != null) {
+                    results.put(key, remote);
+                    Object result = remote.future.join();
+                    execution.future.complete(result);
+                    return type.cast(result);
+                }
+                remoteClaimed = true;
+            }
+
+            T result = call(action);
+            execution.future.complete(result);
+            results.put(key, execution);
+            if (remoteClaimed) {
+                // 结果为null时同样写入，替换执行中的占位值
+                JSONObject value = new JSONObject();
+                value.put(HASH, hash);
+                value.put(RESULT, JSON.toJSONString(result));
+                stringRedisTemplate.opsForValue().set(key, value.toJSONString(),
+                        orderProperties.getIdempotency().getTtlSeconds(), TimeUnit.SECONDS);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (remoteClaimed) {
+                stringRedisTemplate.delete(key);
+            }
+            execution.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, execution);
+        }
+    }
+
+    /**
+     * 在redis中抢占幂等键：抢占成功返回null；其他实例已执行完则返回其结果；
+     * 其他实例正在执行则轮询等待
+     */
+    private Execution claimRemote(String key, String hash, Class<?> type) {
+        OrderProperties.Idempotency idempotency = orderProperties.getIdempotency();
+        long deadline = System.currentTimeMillis() + idempotency.getWaitTimeoutMillis();
+        JSONObject processing = new JSONObject();
+        processing.put(HASH, hash);
+
+        while (true) {
+            Boolean claimed = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(key, processing.toJSONString(), idempotency.getTtlSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(claimed)) {
+                return null;
+            }
+
+            String value = stringRedisTemplate.opsForValue().get(key);
+            if (value != null && !value.isEmpty()) {
+                JSONObject stored = JSON.parseObject(value);
+                Execution remote = new Execution(stored.getString(HASH)).check(key, hash);
+                if (stored.containsKey(RESULT)) {
+                    log.info("重复请求，返回其他实例保存的结果: {}", key);
+                    remote.future.complete(JSON.parseObject(stored.getString(RESULT), type));
+                    return remote;
+                }
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                throw new OrderBusinessException(MessageConstant.REQUEST_IN_PROGRESS);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OrderBusinessException(MessageConstant.REQUEST_IN_PROGRESS);
+            }
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get(orderProperties.getIdempotency().getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new OrderBusinessException(MessageConstant.REQUEST_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderBusinessException(MessageConstant.REQUEST_IN_PROGRESS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private <T> T call(Callable<T> action) {
+        try {
+            return action.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一次执行：请求参数摘要和执行结果，结果可以为null
+     */
+    private static class Execution {
+
+        private final String hash;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Execution(String hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * 幂等键已用于参数不同的请求时拒绝
+         */
+        Execution check(String key, String requestHash) {
+            if (!requestHash.equals(hash)) {
+                log.warn("幂等键已用于其他请求: {}", key);
+                throw new OrderBusinessException(MessageConstant.IDEMPOTENCY_KEY_REUSED);
+            }
+            return this;
+        }
+    }
+}
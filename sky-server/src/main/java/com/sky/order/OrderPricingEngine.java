@@ -0,0 +1,139 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单计价引擎
+ *
+ * 基于内存中的菜单价格快照计算订单金额，计价过程不访问数据库，全部使用分为单位的long运算。
+ * 快照只包含起售中的菜品和套餐，停售的商品不能下单；打包费按购物车商品份数由服务端计算。
+ * 菜品、套餐发生变更后快照失效，下一次计价时整体重建一次；
+ * 多实例部署时其他实例的快照通过最长存活时间兜底刷新。
+ */
+@Component
+@Slf4j
+public class OrderPricingEngine {
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile MenuSnapshot snapshot;
+
+    /**
+     * 计算购物车商品总价（分），并把每一行的单价改写为服务端价格
+     *
+     * @param cartList
+     * @return
+     */
+    public long price(List<ShoppingCart> cartList) {
+        MenuSnapshot menu = currentSnapshot();
+
+        long total = 0L;
+        for (ShoppingCart cart : cartList) {
+            Long unitPrice = cart.getDishId() != null
+                    ? menu.dishPrice(cart.getDishId())
+                    : menu.setmealPrice(cart.getSetmealId());
+            if (unitPrice == null) {
+                throw new OrderBusinessException(MessageConstant.ITEM_NOT_AVAILABLE + "：" + cart.getName());
+            }
+
+            int number = cart.getNumber() == null ? 1 : cart.getNumber();
+            total += unitPrice * number;
+            cart.setAmount(MenuSnapshot.fromCents(unitPrice));
+        }
+        return total;
+    }
+
+    /**
+     * 计算打包费（元）：每份商品按配置的单价收取
+     *
+     * @param cartList
+     * @return
+     */
+    public int packAmount(List<ShoppingCart> cartList) {
+        int items = 0;
+        for (ShoppingCart cart : cartList) {
+            items += cart.getNumber() == null ? 1 : cart.getNumber();
+        }
+        return items * orderProperties.getPackFeePerItem();
+    }
+
+    /**
+     * 计算订单应付总额（分）：商品总价 + 打包费 + 配送费
+     *
+     * @param cartList
+     * @param packAmount 服务端计算的打包费（元），见 {@link #packAmount(List)}
+     * @return
+     */
+    public long priceOrder(List<ShoppingCart> cartList, int packAmount) {
+        return price(cartList) + packAmount * 100L + MenuSnapshot.toCents(orderProperties.getDeliveryFee());
+    }
+
+    /**
+     * 菜单发生变更，使快照失效；在事务中调用时等到提交后再失效，避免重建时读到旧数据
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+
+    private MenuSnapshot currentSnapshot() {
+        MenuSnapshot menu = snapshot;
+        if (menu != null && menu.getVersion() == version.get() && !expired(menu)) {
+            return menu;
+        }
+        return rebuild();
+    }
+
+    private synchronized MenuSnapshot rebuild() {
+        long expected = version.get();
+        MenuSnapshot menu = snapshot;
+        if (menu != null && menu.getVersion() == expected && !expired(menu)) {
+            return menu;
+        }
+
+        List<Dish> dishes = dishMapper.list(Dish.builder().status(StatusConstant.ENABLE).build());
+        List<Setmeal> setmeals = setmealMapper.list(Setmeal.builder().status(StatusConstant.ENABLE).build());
+        menu = new MenuSnapshot(dishes, setmeals, expected);
+        snapshot = menu;
+
+        log.info("重建菜单价格快照，菜品: {}, 套餐: {}", dishes.size(), setmeals.size());
+        return menu;
+    }
+
+    private boolean expired(MenuSnapshot menu) {
+        return System.currentTimeMillis() - menu.getCreatedAt() > orderProperties.getMenuSnapshotTtlMillis();
+    }
+}
@@ -0,0 +1,25 @@
+package com.sky.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单号、手机号模糊搜索在索引中命中的候选订单
+ */
+@Data
+@AllArgsConstructor
+public class OrderSearchFilter {
+
+    /**
+     * 索引范围内命中的候选订单id
+     */
+    private List<Long> ids;
+
+    /**
+     * 索引覆盖的起始下单时间；查询未指定开始时间或开始时间早于索引范围时不为null，早于该时间的订单仍按原条件扫描
+     */
+    private LocalDateTime uncoveredBefore;
+}
@@ -0,0 +1,251 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 订单号、手机号的三元组（trigram）索引
+ *
+ * 把最近若干天订单的订单号和手机号拆成所有连续的3个字符，记录每个三元组出现在哪些订单中。
+ * 模糊搜索时取搜索词的全部三元组对应的订单集合求交集，得到候选订单id，
+ * 再由sql以 id in (...) 主键查询，原有的like条件仍然保留用于精确过滤。
+ * 新订单在下单后增量加入索引；每天凌晨从数据库重建，淘汰超出范围的订单。
+ * 索引不改变搜索结果：查询未指定开始时间或开始时间早于索引范围时，更早的订单仍按原条件扫描。
+ */
+@Component
+@Slf4j
+public class OrderSearchIndex implements OrderEventListener {
+
+    private static final int GRAM = 3;
+
+    private static final int REBUILD_CHUNK = 5000;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private volatile Index index;
+
+    /**
+     * 重建期间新增的订单，切换到新索引后合并；不在重建时为null
+     */
+    private volatile Queue<Orders> rebuilding;
+
+    @PostConstruct
+    public void init() {
+        if (orderProperties.getSearch().isIndexEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 从数据库重建索引
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void rebuild() {
+        if (!orderProperties.getSearch().isIndexEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime since = LocalDate.now().minusDays(orderProperties.getSearch().getIndexDays()).atTime(LocalTime.MIN);
+        Index rebuilt = new Index(since);
+
+        Queue<Orders> pending = new ConcurrentLinkedQueue<>();
+        rebuilding = pending;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Orders> chunk = orderMapper.getSearchFields(since, afterId, REBUILD_CHUNK);
+                chunk.forEach(rebuilt::add);
+                if (chunk.size() < REBUILD_CHUNK) {
+                    break;
+                }
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+            index = rebuilt;
+            pending.forEach(rebuilt::add);
+        } finally {
+            rebuilding = null;
+        }
+        // 合并期间仍可能有订单加入队列，停止记录后再合并一次，已存在的订单会被忽略
+        pending.forEach(rebuilt::add);
+        log.info("订单搜索索引重建完成，订单数: {}, 耗时: {}ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    public void onCreated(Orders orders) {
+        Queue<Orders> pending = rebuilding;
+        Index current = index;
+        if (current == null && pending == null) {
+            return;
+        }
+        Orders fields = Orders.builder()
+                .id(orders.getId())
+                .number(orders.getNumber())
+                .phone(orders.getPhone())
+                .orderTime(orders.getOrderTime())
+                .build();
+        if (current != null) {
+            current.add(fields);
+        }
+        if (pending != null) {
+            pending.add(fields);
+        }
+    }
+
+    /**
+     * 根据订单号、手机号搜索词计算候选订单
+     *
+     * @param number
+     * @param phone
+     * @param beginTime 查询的下单时间下限，落在索引范围内时不再扫描更早的订单
+     * @return 索引无法使用（搜索词都不足3个字符、索引未启用或候选过多）时返回null
+     */
+    public OrderSearchFilter filter(String number, String phone, LocalDateTime beginTime) {
+        Index current = index;
+        if (current == null) {
+            return null;
+        }
+
+        Set<Long> candidates = null;
+        if (number != null && number.length() >= GRAM) {
+            candidates = current.search(current.numberGrams, number);
+        }
+        if (phone != null && phone.length() >= GRAM) {
+            Set<Long> phoneCandidates = current.search(current.phoneGrams, phone);
+            if (candidates == null) {
+                candidates = phoneCandidates;
+            } else {
+                candidates.retainAll(phoneCandidates);
+            }
+        }
+        if (candidates == null || candidates.size() > orderProperties.getSearch().getMaxCandidates()) {
+            return null;
+        }
+
+        // 查询范围完全落在索引范围内时，才能省去对更早订单的like扫描
+        LocalDateTime uncoveredBefore = beginTime == null || beginTime.isBefore(current.since) ? current.since : null;
+        return new OrderSearchFilter(new ArrayList<>(candidates), uncoveredBefore);
+    }
+
+    private static class Index {
+
+        private final LocalDateTime since;
+
+        private final ConcurrentMap<Long, Postings> numberGrams = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<Long, Postings> phoneGrams = new ConcurrentHashMap<>();
+
+        private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        Index(LocalDateTime since) {
+            this.since = since;
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        void add(Orders orders) {
+            if (orders.getOrderTime() != null && orders.getOrderTime().isBefore(since)) {
+                return;
+            }
+            if (!ids.add(orders.getId())) {
+                return;
+            }
+            addGrams(numberGrams, orders.getNumber(), orders.getId());
+            addGrams(phoneGrams, orders.getPhone(), orders.getId());
+        }
+
+        Set<Long> search(ConcurrentMap<Long, Postings> grams, String term) {
+            Set<Long> keys = grams(term);
+            List<long[]> lists = new ArrayList<>(keys.size());
+            for (Long key : keys) {
+                Postings postings = grams.get(key);
+                if (postings == null) {
+                    return new HashSet<>();
+                }
+                lists.add(postings.snapshot());
+            }
+            // 从最短的列表开始求交集
+            lists.sort(Comparator.comparingInt(list -> list.length));
+
+            Set<Long> result = new HashSet<>();
+            for (long id : lists.get(0)) {
+                result.add(id);
+            }
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                Set<Long> next = new HashSet<>();
+                for (long id : lists.get(i)) {
+                    if (result.contains(id)) {
+                        next.add(id);
+                    }
+                }
+                result = next;
+            }
+            return result;
+        }
+
+        private static void addGrams(ConcurrentMap<Long, Postings> grams, String value, Long id) {
+            if (value == null || value.length() < GRAM) {
+                return;
+            }
+            for (Long key : grams(value)) {
+                grams.computeIfAbsent(key, k -> new Postings()).add(id);
+            }
+        }
+
+        /**
+         * 字符串中所有不重复的三元组，3个字符各占16位合并为一个long
+         */
+        private static Set<Long> grams(String value) {
+            Set<Long> keys = new HashSet<>();
+            for (int i = 0; i + GRAM <= value.length(); i++) {
+                keys.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * 三元组对应的订单id列表，基本类型数组按需扩容
+     */
+    private static class Postings {
+
+        private long[] ids = new long[4];
+
+        private int size;
+
+        synchronized void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sky.order;
+
+import com.sky.mapper.OrderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.YearMonth;
+
+/**
+ * 订单月份分表的创建
+ *
+ * 启动时补齐从最早月份到下个月的分表，每月下旬提前创建下个月的分表，
+ * 保证跨月时写入和查询的表都已存在
+ */
+@Component
+@Slf4j
+public class OrderShardTables {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @PostConstruct
+    @Scheduled(cron = "0 0 2 25 * ?")
+    public void createTables() {
+        if (!orderShards.isEnabled()) {
+            return;
+        }
+        for (YearMonth month : orderShards.all()) {
+            orderMapper.createShardTable(orderShards.table(month));
+        }
+        log.info("订单月份分表已创建至: {}", orderShards.table(YearMonth.now().plusMonths(1)));
+    }
+}
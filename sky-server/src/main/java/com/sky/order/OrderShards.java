@@ -0,0 +1,146 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderProperties;
+import com.sky.utils.OrderNumberGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 订单按月分表规则
+ *
+ * 订单按下单时间写入 orders_yyyyMM。分表模式下订单id取自订单号（Snowflake，高位为生成时的时间戳），
+ * 按id查询时可以从id解析出月份；按时间范围查询时只访问与范围重叠的月份。
+ */
+@Component
+public class OrderShards {
+
+    public static final String TABLE = "orders";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 开启分表前的自增id解析出的时间都在EPOCH之后一天内
+     */
+    private static final long LEGACY_ID_MILLIS = 24 * 60 * 60 * 1000L;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    private YearMonth firstMonth;
+
+    @PostConstruct
+    public void init() {
+        firstMonth = YearMonth.parse(orderProperties.getSharding().getFirstMonth(), SUFFIX);
+    }
+
+    public boolean isEnabled() {
+        return orderProperties.getSharding().isEnabled();
+    }
+
+    /**
+     * 月份对应的分表名
+     *
+     * @param month
+     * @return
+     */
+    public String table(YearMonth month) {
+        return TABLE + "_" + month.format(SUFFIX);
+    }
+
+    /**
+     * 从最早月份到下个月的全部分表
+     *
+     * @return
+     */
+    public List<YearMonth> all() {
+        return between(firstMonth, YearMonth.now().plusMonths(1));
+    }
+
+    /**
+     * 与下单时间范围重叠的分表，范围两端超出已有分表时截断
+     *
+     * @param begin 为null表示不限
+     * @param end 为null表示不限
+     * @return
+     */
+    public List<YearMonth> months(LocalDateTime begin, LocalDateTime end) {
+        YearMonth last = YearMonth.now().plusMonths(1);
+        YearMonth from = clamp(begin == null ? firstMonth : YearMonth.from(begin), last);
+        YearMonth to = clamp(end == null ? last : YearMonth.from(end), last);
+        return from.isAfter(to) ? Arrays.asList(from) : between(from, to);
+    }
+
+    /**
+     * 订单id可能所在的分表
+     *
+     * @param id
+     * @return 开启分表前的自增id无法解析月份，返回全部分表
+     */
+    public List<YearMonth> monthsOfId(long id) {
+        long timestamp = OrderNumberGenerator.extractTimestamp(id);
+        if (timestamp < OrderNumberGenerator.EPOCH + LEGACY_ID_MILLIS) {
+            return all();
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        YearMonth month = YearMonth.from(time);
+        if (month.isBefore(firstMonth) || month.isAfter(YearMonth.now().plusMonths(1))) {
+            return all();
+        }
+        // 先设置下单时间再生成订单号，月初的订单可能下单于上个月
+        long grace = orderProperties.getSharding().getIdGraceSeconds();
+        if (month.isAfter(firstMonth) && time.isBefore(month.atDay(1).atStartOfDay().plusSeconds(grace))) {
+            return Arrays.asList(month.minusMonths(1), month);
+        }
+        return Arrays.asList(month);
+    }
+
+    /**
+     * 订单写入的分表，同时为没有id的订单分配id
+     *
+     * @param orders
+     * @return
+     */
+    public YearMonth route(Orders orders) {
+        if (orders.getId() == null) {
+            orders.setId(idOf(orders.getNumber()));
+        }
+        return YearMonth.from(orders.getOrderTime());
+    }
+
+    private long idOf(String number) {
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return orderNumberGenerator.nextId();
+        }
+    }
+
+    private YearMonth clamp(YearMonth month, YearMonth last) {
+        if (month.isBefore(firstMonth)) {
+            return firstMonth;
+        }
+        return month.isAfter(last) ? last : month;
+    }
+
+    private static List<YearMonth> between(YearMonth from, YearMonth to) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+}
@@ -0,0 +1,158 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单状态机
+ *
+ * 声明订单状态之间的合法流转，每次流转执行
+ * update orders set status = 目标状态 ... where id = ? and status in (原状态)，
+ * 以受影响行数判断是否成功，并发操作同一订单时只有一个能成功。
+ * 有多个允许的原状态时（取消订单），同一条update把流转前的状态记入会话变量，成功后再读出该变量，
+ * 不查询订单表、不额外加锁；这是相对“每次流转只执行一条语句”的有意偏离，
+ * 因为订单状态计数、汇总表等监听者需要确切的原状态。
+ * 流转成功后通过OrderEvents通知订单状态计数等监听者。
+ */
+@Component
+public class OrderStateMachine {
+
+    /**
+     * 订单状态流转
+     */
+    public enum Transition {
+
+        /**
+         * 支付成功
+         */
+        PAY(Orders.TO_BE_CONFIRMED, false, Orders.PENDING_PAYMENT),
+
+        /**
+         * 商家接单
+         */
+        CONFIRM(Orders.CONFIRMED, false, Orders.TO_BE_CONFIRMED),
+
+        /**
+         * 商家拒单，已支付的订单标记为退款
+         */
+        REJECT(Orders.CANCELLED, true, Orders.TO_BE_CONFIRMED),
+
+        /**
+         * 商家取消订单，已完成或已取消的订单不能取消
+         */
+        CANCEL(Orders.CANCELLED, true, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS),
+
+        /**
+         * 用户取消订单，商家接单后不能取消
+         */
+        USER_CANCEL(Orders.CANCELLED, true, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED),
+
+        /**
+         * 派送订单
+         */
+        DELIVER(Orders.DELIVERY_IN_PROGRESS, false, Orders.CONFIRMED),
+
+        /**
+         * 完成订单
+         */
+        COMPLETE(Orders.COMPLETED, false, Orders.DELIVERY_IN_PROGRESS);
+
+        private final Integer target;
+
+        private final boolean refund;
+
+        private final List<Integer> sources;
+
+        Transition(Integer target, boolean refund, Integer... sources) {
+            this.target = target;
+            this.refund = refund;
+            this.sources = Collections.unmodifiableList(Arrays.asList(sources));
+        }
+
+        public Integer getTarget() {
+            return target;
+        }
+
+        public List<Integer> getSources() {
+            return sources;
+        }
+
+        /**
+         * 流转后是否把已支付的订单标记为退款
+         *
+         * @return
+         */
+        public boolean isRefund() {
+            return refund;
+        }
+
+        /**
+         * 处于给定状态的订单是否允许执行该流转
+         *
+         * @param status
+         * @return
+         */
+        public boolean allows(Integer status) {
+            return sources.contains(status);
+        }
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    /**
+     * 执行状态流转，订单不存在或当前状态不允许时抛出业务异常
+     *
+     * @param id
+     * @param transition
+     * @param changes 随状态一起修改的字段（取消原因、取消时间等），可以为null
+     */
+    @Transactional
+    public void fire(Long id, Transition transition, Orders changes) {
+        if (tryFire(id, transition, changes)) {
+            return;
+        }
+        // 只有失败时才查询一次，用于区分订单不存在和状态错误
+        if (orderMapper.getById(id) == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+    }
+
+    /**
+     * 尝试执行状态流转
+     *
+     * 只有一个允许的原状态时条件更新成功即说明流转前是该状态；有多个时由同一条更新记录流转前的状态，
+     * 在同一事务（同一连接）中读出
+     *
+     * @param id
+     * @param transition
+     * @param changes 随状态一起修改的字段，可以为null
+     * @return 订单存在且状态允许时返回true
+     */
+    @Transactional
+    public boolean tryFire(Long id, Transition transition, Orders changes) {
+        Orders orders = changes == null ? new Orders() : changes;
+        orders.setId(id);
+        orders.setStatus(transition.getTarget());
+        boolean multiSource = transition.getSources().size() > 1;
+        if (orderMapper.transition(orders, transition.getSources(), transition.isRefund(), multiSource) == 0) {
+            return false;
+        }
+        Integer source = multiSource ? orderMapper.getTransitionSource() : transition.getSources().get(0);
+        orderEvents.transitioned(id, source, transition.getTarget());
+        return true;
+    }
+}
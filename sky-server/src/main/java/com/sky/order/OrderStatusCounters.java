@@ -0,0 +1,235 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单状态计数
+ *
+ * 在内存中按状态维护全部订单数和当日订单数，由订单新增和状态流转事件增量更新，
+ * 管理端的订单统计、今日订单概览直接读取计数，不再执行count查询。
+ * 定时用一条 group by status 查询与数据库对账，修正多实例部署或异常情况下的偏差：
+ * 查询前记下当前计数，查询结果与它的差即为偏差，只把偏差加到计数上，查询期间发生的事件仍然保留。
+ */
+@Component
+@Slf4j
+public class OrderStatusCounters implements OrderEventListener {
+
+    /**
+     * 状态取值 1-6，下标即状态
+     */
+    private static final int STATUS_SLOTS = Orders.CANCELLED + 1;
+
+    /**
+     * 增量加载当日订单id时向前多取的秒数，覆盖下单时间早于提交时间的订单
+     */
+    private static final long ID_OVERLAP_SECONDS = 300;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    private final LongAdder[] total = newCounters();
+
+    private volatile DayCounters today = new DayCounters(LocalDate.now());
+
+    @PostConstruct
+    public void init() {
+        reconcile();
+    }
+
+    /**
+     * 指定状态的订单数
+     *
+     * @param status
+     * @return
+     */
+    public int count(Integer status) {
+        return (int) total[status].sum();
+    }
+
+    /**
+     * 今日下单且处于指定状态的订单数，status为null时返回今日全部订单数
+     *
+     * @param status
+     * @return
+     */
+    public int countToday(Integer status) {
+        DayCounters day = today();
+        if (status != null) {
+            return (int) day.counts[status].sum();
+        }
+        long sum = 0;
+        for (LongAdder counter : day.counts) {
+            sum += counter.sum();
+        }
+        return (int) sum;
+    }
+
+    /**
+     * 订单是否已知为今日下单，只依据内存中的今日订单id，不在其中的订单不一定不是今日下单
+     *
+     * @param orderId
+     * @return
+     */
+    public boolean isToday(Long orderId) {
+        return today().orderIds.contains(orderId);
+    }
+
+    public void onCreated(Orders orders) {
+        total[orders.getStatus()].increment();
+
+        DayCounters day = today();
+        if (orders.getOrderTime() != null && day.date.equals(orders.getOrderTime().toLocalDate())) {
+            day.orderIds.add(orders.getId());
+            day.counts[orders.getStatus()].increment();
+        }
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        move(total, fromStatus, toStatus, 1);
+
+        DayCounters day = today();
+        if (day.orderIds.contains(orderId)) {
+            move(day.counts, fromStatus, toStatus, 1);
+        }
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        move(total, fromStatus, toStatus, rows);
+
+        DayCounters day = today();
+        int todayRows = 0;
+        for (Long orderId : orderIds) {
+            if (day.orderIds.contains(orderId)) {
+                todayRows++;
+            }
+        }
+        if (todayRows == 0) {
+            return;
+        }
+        if (rows == orderIds.size()) {
+            move(day.counts, fromStatus, toStatus, todayRows);
+        } else {
+            // 部分订单未修改，无法确定其中有多少是今日订单，直接对账
+            reconcile();
+        }
+    }
+
+    /**
+     * 与数据库对账
+     *
+     * 当日订单id只加载上次对账之后新增的部分，其余由订单新增事件维护
+     */
+    @Scheduled(fixedDelayString = "${sky.order.counter-reconcile-millis:60000}")
+    public synchronized void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        DayCounters day = today();
+
+        LocalDateTime since = day.date.atTime(LocalTime.MIN);
+        if (day.idsLoadedAt != null && day.idsLoadedAt.minusSeconds(ID_OVERLAP_SECONDS).isAfter(since)) {
+            since = day.idsLoadedAt.minusSeconds(ID_OVERLAP_SECONDS);
+        }
+        day.orderIds.addAll(orderMapper.getIdsByOrderTimeGE(since));
+        day.idsLoadedAt = now;
+
+        correct("全部", total, null);
+        correct(day.date.toString(), day.counts, day.date);
+    }
+
+    /**
+     * 查询前记下计数，以查询结果与其差值修正计数
+     *
+     * 查询期间发生并已计入的事件同时体现在查询结果中时，下次对账会再修正回来
+     */
+    private void correct(String name, LongAdder[] counters, LocalDate date) {
+        long[] before = new long[STATUS_SLOTS];
+        for (int i = 0; i < STATUS_SLOTS; i++) {
+            before[i] = counters[i].sum();
+        }
+        LongAdder[] actual = load(date);
+        for (int i = 1; i < STATUS_SLOTS; i++) {
+            long drift = actual[i].sum() - before[i];
+            if (drift != 0) {
+                counters[i].add(drift);
+                log.info("订单状态计数对账修正: {}，状态 {}，偏差 {}", name, i, drift);
+            }
+        }
+    }
+
+    private LongAdder[] load(LocalDate date) {
+        LongAdder[] counters = newCounters();
+        List<Map<String, Object>> rows = orderMapper.countGroupByStatus(date == null ? null : date.atTime(LocalTime.MIN));
+        for (Map<String, Object> row : rows) {
+            int status = ((Number) row.get("status")).intValue();
+            if (status > 0 && status < STATUS_SLOTS) {
+                counters[status].add(((Number) row.get("number")).longValue());
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * 当日计数，跨天后切换为新的空计数
+     */
+    private DayCounters today() {
+        DayCounters day = today;
+        LocalDate now = LocalDate.now();
+        if (day.date.equals(now)) {
+            return day;
+        }
+        synchronized (this) {
+            if (!today.date.equals(now)) {
+                today = new DayCounters(now);
+            }
+            return today;
+        }
+    }
+
+    private static void move(LongAdder[] counters, Integer fromStatus, Integer toStatus, long n) {
+        counters[fromStatus].add(-n);
+        counters[toStatus].add(n);
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[STATUS_SLOTS];
+        for (int i = 0; i < STATUS_SLOTS; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static class DayCounters {
+
+        private final LocalDate date;
+
+        private final LongAdder[] counts = newCounters();
+
+        /**
+         * 当日下单的订单id，用于判断状态流转是否影响当日计数
+         */
+        private final Set<Long> orderIds = ConcurrentHashMap.newKeySet();
+
+        /**
+         * 上次从数据库加载当日订单id的时间
+         */
+        private volatile LocalDateTime idsLoadedAt;
+
+        DayCounters(LocalDate date) {
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.sky.order;
+
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下单批量提交管道
+ *
+ * 下单请求把待写入的订单放入有界队列，由单个写线程按批取出，
+ * 在一个事务中用多行insert写入orders和order_detail并清空下单用户的购物车，多个请求共享一次提交。
+ * 调用方阻塞等待自己所在批次提交完成后拿到生成的订单id。
+ */
+@Component
+@Slf4j
+public class OrderSubmitPipeline {
+
+    private static final int PENDING = 0;
+    private static final int CLAIMED = 1;
+    private static final int CANCELLED = 2;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PendingOrder> queue;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        OrderProperties.Submit submit = orderProperties.getSubmit();
+        if (!submit.isBatchEnabled()) {
+            return;
+        }
+
+        log.info("启动下单批量提交管道，批大小: {}, 等待时间: {}ms, 队列容量: {}",
+                submit.getBatchSize(), submit.getLingerMillis(), submit.getQueueCapacity());
+
+        queue = new ArrayBlockingQueue<>(submit.getQueueCapacity());
+        running = true;
+        writer = new Thread(this::writeLoop, "order-submit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(orderProperties.getSubmit().getTimeoutMillis());
+    }
+
+    /**
+     * 是否启用批量提交
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 提交订单并等待写库完成，成功后orders和orderDetailList中的id均已回填，下单用户的购物车已在同一事务中清空
+     * 队列已满时返回false，由调用方自行写库
+     *
+     * @param orders
+     * @param orderDetailList
+     * @return
+     */
+    public boolean submit(Orders orders, List<OrderDetail> orderDetailList) {
+        PendingOrder pending = new PendingOrder(orders, orderDetailList);
+        if (!queue.offer(pending)) {
+            log.warn("下单批量提交队列已满，退回单独写库");
+            return false;
+        }
+
+        try {
+            pending.future.get(orderProperties.getSubmit().getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 尚未被写线程取走时直接撤销；已取走则说明正在写库，继续等待结果
+            if (pending.state.compareAndSet(PENDING, CANCELLED)) {
+                throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_TIMEOUT);
+            }
+            await(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.state.compareAndSet(PENDING, CANCELLED)) {
+                throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_TIMEOUT);
+            }
+            await(pending);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        return true;
+    }
+
+    private void await(PendingOrder pending) {
+        try {
+            pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_TIMEOUT);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * 写线程主循环：取到第一个订单后在等待时间内尽量凑满一批再提交
+     */
+    private void writeLoop() {
+        OrderProperties.Submit submit = orderProperties.getSubmit();
+        int batchSize = submit.getBatchSize();
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(submit.getLingerMillis());
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Throwable e) {
+                log.error("下单批量提交失败", e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中写入一批订单；整批失败时逐单重试，避免一个坏订单拖垮整批
+     *
+     * @param batch
+     */
+    private void flush(List<PendingOrder> batch) {
+        List<PendingOrder> claimed = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            if (pending.state.compareAndSet(PENDING, CLAIMED)) {
+                claimed.add(pending);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(claimed));
+            claimed.forEach(pending -> pending.future.complete(pending.orders.getId()));
+            log.debug("批量写入订单: {}", claimed.size());
+        } catch (RuntimeException e) {
+            log.warn("批量写入{}个订单失败，改为逐单写入: {}", claimed.size(), e.getMessage());
+            for (PendingOrder pending : claimed) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(Collections.singletonList(pending)));
+                    pending.future.complete(pending.orders.getId());
+                } catch (RuntimeException ex) {
+                    pending.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private void write(List<PendingOrder> pendings) {
+        List<Orders> ordersList = new ArrayList<>(pendings.size());
+        pendings.forEach(pending -> ordersList.add(pending.orders));
+        orderMapper.insertBatch(ordersList);
+
+        List<OrderDetail> orderDetailList = new ArrayList<>();
+        for (PendingOrder pending : pendings) {
+            for (OrderDetail orderDetail : pending.orderDetailList) {
+                orderDetail.setOrderId(pending.orders.getId());
+                orderDetailList.add(orderDetail);
+            }
+        }
+        orderDetailMapper.insertBatch(orderDetailList);
+
+        Set<Long> userIds = new LinkedHashSet<>();
+        pendings.forEach(pending -> userIds.add(pending.orders.getUserId()));
+        cartStore.clearBatch(new ArrayList<>(userIds));
+    }
+
+    private static class PendingOrder {
+
+        private final Orders orders;
+
+        private final List<OrderDetail> orderDetailList;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        PendingOrder(Orders orders, List<OrderDetail> orderDetailList) {
+            this.orders = orders;
+            this.orderDetailList = orderDetailList;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 超时未付款订单的批量取消，供各OrderTimeoutScheduler实现共用
+ */
+@Component
+@Slf4j
+public class OrderTimeoutCanceller {
+
+    public static final String CANCEL_REASON = "订单超时未付款，自动取消";
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    /**
+     * 取消到期订单，按批大小拆分为多条 update ... where status = 待付款 and id in (...)
+     * 到期前已支付或已取消的订单不会被修改
+     *
+     * @param orderIds
+     * @return 实际取消的订单数
+     */
+    public int cancel(List<Long> orderIds) {
+        int batchSize = orderProperties.getTimeout().getBatchSize();
+        LocalDateTime now = LocalDateTime.now();
+        int cancelled = 0;
+        for (int from = 0; from < orderIds.size(); from += batchSize) {
+            List<Long> ids = orderIds.subList(from, Math.min(from + batchSize, orderIds.size()));
+            int rows = orderMapper.cancelBatch(ids, Orders.PENDING_PAYMENT, Orders.CANCELLED, CANCEL_REASON, now);
+            orderEvents.bulkTransitioned(ids, Orders.PENDING_PAYMENT, Orders.CANCELLED, rows);
+            cancelled += rows;
+        }
+        log.info("超时未付款订单自动取消，到期: {}, 实际取消: {}", orderIds.size(), cancelled);
+        return cancelled;
+    }
+
+    /**
+     * 查询当前所有待付款订单，用于启动时重建到期任务
+     *
+     * @return
+     */
+    public List<Orders> listPending() {
+        return orderMapper.getIdAndOrderTimeByStatus(Orders.PENDING_PAYMENT);
+    }
+
+    /**
+     * 计算订单的到期时间戳（毫秒）
+     *
+     * @param orderTime
+     * @return
+     */
+    public long deadline(LocalDateTime orderTime) {
+        return orderTime.plusMinutes(orderProperties.getTimeout().getPaymentMinutes())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
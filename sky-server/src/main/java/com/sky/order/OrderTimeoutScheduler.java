@@ -0,0 +1,26 @@
+package com.sky.order;
+
+import java.time.LocalDateTime;
+
+/**
+ * 超时未付款订单的到期调度
+ *
+ * 下单后登记到期时间，支付或取消后移除；到期的订单由实现类批量取消
+ */
+public interface OrderTimeoutScheduler {
+
+    /**
+     * 登记待付款订单
+     *
+     * @param orderId
+     * @param orderTime 下单时间
+     */
+    void register(Long orderId, LocalDateTime orderTime);
+
+    /**
+     * 订单已支付或已取消，移除到期任务
+     *
+     * @param orderId
+     */
+    void remove(Long orderId);
+}
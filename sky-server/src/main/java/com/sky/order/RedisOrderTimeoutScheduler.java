@@ -0,0 +1,105 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于redis有序集合的订单超时调度，适用于多实例部署
+ *
+ * order:timeout 中member为订单id，score为到期时间戳；各实例定时用脚本原子地取出并删除到期的订单，
+ * 同一订单只会被一个实例取到。启动时把数据库中的待付款订单重新写入有序集合（重复写入无副作用）。
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order.timeout", name = "store", havingValue = "redis")
+@Slf4j
+public class RedisOrderTimeoutScheduler implements OrderTimeoutScheduler {
+
+    public static final String TIMEOUT_KEY = "order:timeout";
+
+    /**
+     * 取消失败后重试的间隔（毫秒）
+     */
+    private static final long RETRY_DELAY_MILLIS = 60000;
+
+    /**
+     * 取出并删除score不大于ARGV[1]的前ARGV[2]个订单
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> POP_EXPIRED_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids", List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderTimeoutCanceller orderTimeoutCanceller;
+
+    @PostConstruct
+    public void rebuild() {
+        List<Orders> pending = orderTimeoutCanceller.listPending();
+        pending.forEach(orders -> register(orders.getId(), orders.getOrderTime()));
+        log.info("订单超时有序集合已重建，加载待付款订单: {}", pending.size());
+    }
+
+    public void register(Long orderId, LocalDateTime orderTime) {
+        stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, orderId.toString(), orderTimeoutCanceller.deadline(orderTime));
+    }
+
+    public void remove(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(TIMEOUT_KEY, orderId.toString());
+    }
+
+    /**
+     * 轮询到期订单并批量取消
+     */
+    @Scheduled(fixedDelayString = "${sky.order.timeout.poll-interval:1000}")
+    public void poll() {
+        int batchSize = orderProperties.getTimeout().getBatchSize();
+        while (true) {
+            List<Long> orderIds = popExpired(batchSize);
+            if (orderIds.isEmpty()) {
+                return;
+            }
+            try {
+                orderTimeoutCanceller.cancel(orderIds);
+            } catch (RuntimeException e) {
+                log.error("超时订单取消失败，{}ms后重试，数量: {}", RETRY_DELAY_MILLIS, orderIds.size(), e);
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+                orderIds.forEach(orderId -> stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, orderId.toString(), retryAt));
+                return;
+            }
+            if (orderIds.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<Long> popExpired(int limit) {
+        List<?> members = stringRedisTemplate.execute(POP_EXPIRED_SCRIPT, Collections.singletonList(TIMEOUT_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> orderIds = new ArrayList<>(members.size());
+        members.forEach(member -> orderIds.add(Long.valueOf(member.toString())));
+        return orderIds;
+    }
+}
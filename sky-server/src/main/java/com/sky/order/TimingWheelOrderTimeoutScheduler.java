@@ -0,0 +1,72 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderProperties;
+import com.sky.utils.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 基于内存时间轮的订单超时调度，适用于单实例部署
+ *
+ * 启动时从数据库加载全部待付款订单重建时间轮，重启期间到期的订单在启动后立即取消
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.order.timeout", name = "store", havingValue = "wheel", matchIfMissing = true)
+@Slf4j
+public class TimingWheelOrderTimeoutScheduler implements OrderTimeoutScheduler {
+
+    /**
+     * 取消失败后重试的间隔（毫秒）
+     */
+    private static final long RETRY_DELAY_MILLIS = 60000;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderTimeoutCanceller orderTimeoutCanceller;
+
+    private HashedTimingWheel<Long> wheel;
+
+    @PostConstruct
+    public void start() {
+        OrderProperties.Timeout timeout = orderProperties.getTimeout();
+        wheel = new HashedTimingWheel<>("order-timeout-wheel", timeout.getTickMillis(), timeout.getWheelSize(), this::expire);
+        wheel.start();
+
+        List<Orders> pending = orderTimeoutCanceller.listPending();
+        pending.forEach(orders -> register(orders.getId(), orders.getOrderTime()));
+        log.info("订单超时时间轮已启动，加载待付款订单: {}", pending.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        wheel.stop();
+    }
+
+    public void register(Long orderId, LocalDateTime orderTime) {
+        wheel.schedule(orderId, orderTimeoutCanceller.deadline(orderTime));
+    }
+
+    public void remove(Long orderId) {
+        wheel.cancel(orderId);
+    }
+
+    private void expire(List<Long> orderIds) {
+        try {
+            orderTimeoutCanceller.cancel(orderIds);
+        } catch (RuntimeException e) {
+            log.error("超时订单取消失败，{}ms后重试，数量: {}", RETRY_DELAY_MILLIS, orderIds.size(), e);
+            long retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+            orderIds.forEach(orderId -> wheel.schedule(orderId, retryAt));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.sky.page;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.mapper.TableStatsMapper;
+import com.sky.properties.PageProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 分页查询总记录数缓存
+ *
+ * 以 表名 + 表数据版本号 + 规范化后的查询条件 为键缓存总记录数，命中时PageHelper只执行limit查询，不再执行count；
+ * 表发生写入后版本号变化，旧的总数不再命中。开启估算模式时，无查询条件的列表直接使用数据库统计信息中的估算行数。
+ */
+@Component
+@Slf4j
+public class PageCountCache {
+
+    /**
+     * 查询DTO中不是筛选条件的字段
+     */
+    private static final Set<String> NON_FILTER_FIELDS = new HashSet<>(Arrays.asList("page", "pageSize", "cursor", "withTotal"));
+
+    @Autowired
+    private PageProperties pageProperties;
+
+    @Autowired
+    private TableVersions tableVersions;
+
+    @Autowired
+    private TableStatsMapper tableStatsMapper;
+
+    private Cache<String, Long> totals;
+
+    @PostConstruct
+    public void init() {
+        totals = Caffeine.newBuilder()
+                .maximumSize(pageProperties.getCountCacheMaximumSize())
+                .expireAfterWrite(pageProperties.getCountCacheTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 分页查询
+     *
+     * @param table 查询的主表，该表发生写入时缓存的总数失效
+     * @param query 查询条件，分页参数、游标分页的cursor和withTotal以及值为空的字段不参与缓存键
+     * @param pageNum
+     * @param pageSize 超出sky.page.max-page-size时按最大行数查询
+     * @param select 实际的分页查询
+     * @return
+     */
+    public <E> Page<E> query(String table, Object query, int pageNum, int pageSize, Supplier<Page<E>> select) {
+        pageSize = Math.min(pageSize, pageProperties.getMaxPageSize());
+        if (!pageProperties.isCountCacheEnabled()) {
+            PageHelper.startPage(pageNum, pageSize);
+            return select.get();
+        }
+
+        Map<String, Object> filter = normalize(query);
+        String key = table + ":" + tableVersions.get(table) + ":" + JSON.toJSONString(filter);
+
+        Long total = totals.getIfPresent(key);
+        if (total == null && filter.isEmpty() && pageProperties.isApproximateCount()) {
+            total = tableStatsMapper.getApproximateRows(table);
+            if (total != null) {
+                totals.put(key, total);
+            }
+        }
+
+        if (total != null) {
+            PageHelper.startPage(pageNum, pageSize, false);
+            Page<E> page = select.get();
+            page.setTotal(total);
+            return page;
+        }
+
+        PageHelper.startPage(pageNum, pageSize);
+        Page<E> page = select.get();
+        totals.put(key, page.getTotal());
+        return page;
+    }
+
+    /**
+     * 去掉分页参数、不影响筛选结果的字段和空值，并按字段名排序，使相同条件得到相同的键；
+     * 不是筛选条件的基本类型字段（如withTotal）总有值，不去掉时无条件列表的条件永远不为空，用不上估算行数
+     */
+    private Map<String, Object> normalize(Object query) {
+        Map<String, Object> filter = new TreeMap<>();
+        if (query == null) {
+            return filter;
+        }
+        JSONObject json = (JSONObject) JSON.toJSON(query);
+        json.forEach((name, value) -> {
+            if (NON_FILTER_FIELDS.contains(name)) {
+                return;
+            }
+            if (value == null || "".equals(value)) {
+                return;
+            }
+            filter.put(name, value);
+        });
+        return filter;
+    }
+}
@@ -0,0 +1,53 @@
+package com.sky.page;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表数据版本号，表每发生一次写入版本号加一
+ *
+ * 缓存以版本号作为键的一部分，版本号变化后旧缓存自然失效，无需逐个删除
+ */
+@Component
+public class TableVersions {
+
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 当前版本号
+     *
+     * @param table
+     * @return
+     */
+    public long get(String table) {
+        AtomicLong version = versions.get(table);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * 表发生写入：立即加一，处于事务中时提交后再加一，
+     * 避免事务提交前其他线程读到旧数据并缓存在新版本号下
+     *
+     * @param table
+     */
+    public void bump(String table) {
+        increment(table);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(table);
+                }
+            });
+        }
+    }
+
+    private void increment(String table) {
+        versions.computeIfAbsent(table, key -> new AtomicLong()).incrementAndGet();
+    }
+}
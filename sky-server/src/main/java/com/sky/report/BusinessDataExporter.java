@@ -0,0 +1,216 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.vo.BusinessDataVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * 运营数据报表导出
+ *
+ * 整个日期范围的每日数据一次从ReportDataSource读取，汇总行在内存中累加；
+ * 模板文件只读取一次并缓存字节，每次导出基于缓存解析模板、填写汇总区域，
+ * 明细行改用SXSSF流式写出，内存中只保留最近的若干行，一年的明细也只占用固定的堆内存。
+ * 也可以导出为csv：表头、每天一行明细，最后一行为合计。
+ */
+@Component
+@Slf4j
+public class BusinessDataExporter {
+
+    /**
+     * 导出的最大天数
+     */
+    public static final int MAX_DAYS = 366;
+
+    private static final String TEMPLATE = "template/运营数据报表模板.xlsx";
+
+    private static final String SHEET = "Sheet1";
+
+    /**
+     * 模板中第一行明细所在的行号，该行的格式用于全部明细行
+     */
+    private static final int FIRST_DAY_ROW = 7;
+
+    /**
+     * 明细行的列：日期、营业额、有效订单、订单完成率、平均客单价、新增用户数
+     */
+    private static final int FIRST_DAY_COLUMN = 1;
+
+    private static final int LAST_DAY_COLUMN = 6;
+
+    /**
+     * SXSSF在内存中保留的行数，超出的行写入临时文件
+     */
+    private static final int ROW_ACCESS_WINDOW = 100;
+
+    private static final int MONEY_SCALE = 2;
+
+    private static final int RATE_SCALE = 4;
+
+    private static final String CSV_HEADER = "日期,营业额,有效订单,订单完成率,平均客单价,新增用户数\r\n";
+
+    @Autowired
+    private ReportDataSource reportDataSource;
+
+    private volatile byte[] template;
+
+    /**
+     * 导出指定日期范围的运营数据
+     *
+     * @param begin
+     * @param end
+     * @param outputStream
+     * @throws IOException
+     */
+    public void export(LocalDate begin, LocalDate end, OutputStream outputStream) throws IOException {
+        export(begin, end, outputStream, rows -> {
+        });
+    }
+
+    /**
+     * 导出指定日期范围的运营数据
+     *
+     * @param begin
+     * @param end
+     * @param outputStream
+     * @param progress 每写出一行明细回调一次，参数为已写出的行数
+     * @throws IOException
+     */
+    public void export(LocalDate begin, LocalDate end, OutputStream outputStream, IntConsumer progress) throws IOException {
+        long start = System.currentTimeMillis();
+        List<DailyBusinessStats> days = reportDataSource.getDailyStats(begin, end);
+
+        XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(template()));
+        XSSFSheet sheet = workbook.getSheet(SHEET);
+        sheet.getRow(1).getCell(1).setCellValue(begin + " 至 " + end);
+
+        BusinessDataVO summary = DailyStats.toBusinessData(DailyStats.sum(days));
+        sheet.getRow(3).getCell(2).setCellValue(summary.getTurnover());
+        sheet.getRow(3).getCell(4).setCellValue(summary.getOrderCompletionRate());
+        sheet.getRow(3).getCell(6).setCellValue(summary.getNewUsers());
+        sheet.getRow(4).getCell(2).setCellValue(summary.getValidOrderCount());
+        sheet.getRow(4).getCell(4).setCellValue(summary.getUnitPrice());
+
+        // 记下明细行的格式后删除模板中的明细行，SXSSF只能在已有行之后追加新行
+        XSSFRow styleRow = sheet.getRow(FIRST_DAY_ROW);
+        short height = styleRow.getHeight();
+        CellStyle[] styles = new CellStyle[LAST_DAY_COLUMN + 1];
+        for (int column = FIRST_DAY_COLUMN; column <= LAST_DAY_COLUMN; column++) {
+            XSSFCell cell = styleRow.getCell(column);
+            styles[column] = cell == null ? null : cell.getCellStyle();
+        }
+        for (int rowNum = sheet.getLastRowNum(); rowNum >= FIRST_DAY_ROW; rowNum--) {
+            XSSFRow row = sheet.getRow(rowNum);
+            if (row != null) {
+                sheet.removeRow(row);
+            }
+        }
+
+        SXSSFWorkbook streaming = new SXSSFWorkbook(workbook, ROW_ACCESS_WINDOW);
+        streaming.setCompressTempFiles(true);
+        try {
+            SXSSFSheet streamingSheet = streaming.getSheet(SHEET);
+            int rowNum = FIRST_DAY_ROW;
+            for (DailyBusinessStats day : days) {
+                BusinessDataVO data = DailyStats.toBusinessData(day);
+
+                SXSSFRow row = streamingSheet.createRow(rowNum++);
+                row.setHeight(height);
+                for (int column = FIRST_DAY_COLUMN; column <= LAST_DAY_COLUMN; column++) {
+                    if (styles[column] != null) {
+                        row.createCell(column).setCellStyle(styles[column]);
+                    } else {
+                        row.createCell(column);
+                    }
+                }
+                row.getCell(1).setCellValue(day.getStatDate().toString());
+                row.getCell(2).setCellValue(data.getTurnover());
+                row.getCell(3).setCellValue(data.getValidOrderCount());
+                row.getCell(4).setCellValue(data.getOrderCompletionRate());
+                row.getCell(5).setCellValue(data.getUnitPrice());
+                row.getCell(6).setCellValue(data.getNewUsers());
+                progress.accept(rowNum - FIRST_DAY_ROW);
+            }
+            streaming.write(outputStream);
+        } finally {
+            // 删除临时文件
+            streaming.dispose();
+            streaming.close();
+        }
+        log.info("导出运营数据报表 {} 至 {}，耗时: {}ms", begin, end, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 以csv格式导出指定日期范围的运营数据，编码为带BOM的UTF-8，便于Excel直接打开
+     *
+     * @param begin
+     * @param end
+     * @param outputStream
+     * @param progress 每写出一行明细回调一次，参数为已写出的行数
+     * @throws IOException
+     */
+    public void exportCsv(LocalDate begin, LocalDate end, OutputStream outputStream, IntConsumer progress) throws IOException {
+        long start = System.currentTimeMillis();
+        List<DailyBusinessStats> days = reportDataSource.getDailyStats(begin, end);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        writer.write(CSV_HEADER);
+        int rows = 0;
+        for (DailyBusinessStats day : days) {
+            writeCsvRow(writer, day.getStatDate().toString(), DailyStats.toBusinessData(day));
+            progress.accept(++rows);
+        }
+        writeCsvRow(writer, "合计", DailyStats.toBusinessData(DailyStats.sum(days)));
+        writer.flush();
+        log.info("导出运营数据csv {} 至 {}，耗时: {}ms", begin, end, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 金额保留两位小数，订单完成率保留四位小数，不输出double的全部位数或科学计数法
+     */
+    private static void writeCsvRow(Writer writer, String date, BusinessDataVO data) throws IOException {
+        writer.write(date + "," + decimal(data.getTurnover(), MONEY_SCALE) + "," + data.getValidOrderCount() + ","
+                + decimal(data.getOrderCompletionRate(), RATE_SCALE) + "," + decimal(data.getUnitPrice(), MONEY_SCALE)
+                + "," + data.getNewUsers() + "\r\n");
+    }
+
+    private static String decimal(Double value, int scale) {
+        return BigDecimal.valueOf(value == null ? 0.0 : value).setScale(scale, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private byte[] template() throws IOException {
+        byte[] bytes = template;
+        if (bytes == null) {
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(TEMPLATE)) {
+                bytes = StreamUtils.copyToByteArray(inputStream);
+            }
+            template = bytes;
+        }
+        return bytes;
+    }
+}
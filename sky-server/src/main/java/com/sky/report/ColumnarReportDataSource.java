@@ -0,0 +1,36 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单数据由OrderFactStore在内存中统计，新增用户数仍按注册日期分组查询用户表；
+ * 早于存储加载范围的日期按订单表、用户表聚合
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "source", havingValue = "columnar")
+public class ColumnarReportDataSource extends RawReportDataSource {
+
+    @Autowired
+    private OrderFactStore orderFactStore;
+
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        if (begin.isBefore(orderFactStore.getSince())) {
+            return super.getDailyStats(begin, end);
+        }
+
+        Map<LocalDate, DailyBusinessStats> days = new HashMap<>();
+        for (DailyBusinessStats day : orderFactStore.getDailyStats(begin, end)) {
+            days.put(day.getStatDate(), day);
+        }
+        addNewUsers(days, begin, end);
+        return DailyStats.fill(begin, end, days.values());
+    }
+}
@@ -0,0 +1,32 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 由OrderFactStore的菜品行在内存中统计销量，早于存储加载范围的日期查询订单明细
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "sales-ranking", havingValue = "columnar")
+public class ColumnarSalesRanking extends SqlSalesRanking {
+
+    @Autowired
+    private OrderFactStore orderFactStore;
+
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int limit) {
+        if (begin.isBefore(orderFactStore.getSince())) {
+            return super.top(begin, end, limit);
+        }
+        return orderFactStore.getDishSales(begin, end).entrySet().stream()
+                .map(entry -> new GoodsSalesDTO(entry.getKey(), entry.getValue()))
+                .sorted(ORDER)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
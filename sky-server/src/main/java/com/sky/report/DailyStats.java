@@ -0,0 +1,143 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.vo.BusinessDataVO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每日营业数据的补齐、累加和换算
+ */
+public final class DailyStats {
+
+    private DailyStats() {
+    }
+
+    public static DailyBusinessStats empty(LocalDate date) {
+        return DailyBusinessStats.builder().statDate(date).build();
+    }
+
+    /**
+     * 按日期补齐范围内的每一天
+     *
+     * @param begin
+     * @param end
+     * @param rows
+     * @return
+     */
+    public static List<DailyBusinessStats> fill(LocalDate begin, LocalDate end, Collection<DailyBusinessStats> rows) {
+        Map<LocalDate, DailyBusinessStats> byDate = new HashMap<>();
+        rows.forEach(row -> byDate.put(row.getStatDate(), row));
+
+        List<DailyBusinessStats> days = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessStats day = byDate.get(date);
+            days.add(day == null ? empty(date) : day);
+        }
+        return days;
+    }
+
+    /**
+     * 把delta的各项累加到target
+     *
+     * @param target
+     * @param delta
+     */
+    public static void add(DailyBusinessStats target, DailyBusinessStats delta) {
+        target.setTurnover(target.getTurnover() + delta.getTurnover());
+        target.setTotalOrders(target.getTotalOrders() + delta.getTotalOrders());
+        target.setPendingPaymentOrders(target.getPendingPaymentOrders() + delta.getPendingPaymentOrders());
+        target.setToBeConfirmedOrders(target.getToBeConfirmedOrders() + delta.getToBeConfirmedOrders());
+        target.setConfirmedOrders(target.getConfirmedOrders() + delta.getConfirmedOrders());
+        target.setDeliveryInProgressOrders(target.getDeliveryInProgressOrders() + delta.getDeliveryInProgressOrders());
+        target.setCompletedOrders(target.getCompletedOrders() + delta.getCompletedOrders());
+        target.setCancelledOrders(target.getCancelledOrders() + delta.getCancelledOrders());
+        target.setNewUsers(target.getNewUsers() + delta.getNewUsers());
+    }
+
+    /**
+     * 指定状态的订单数加n
+     *
+     * @param stats
+     * @param status
+     * @param n
+     */
+    public static void addStatus(DailyBusinessStats stats, Integer status, int n) {
+        if (Orders.PENDING_PAYMENT.equals(status)) {
+            stats.setPendingPaymentOrders(stats.getPendingPaymentOrders() + n);
+        } else if (Orders.TO_BE_CONFIRMED.equals(status)) {
+            stats.setToBeConfirmedOrders(stats.getToBeConfirmedOrders() + n);
+        } else if (Orders.CONFIRMED.equals(status)) {
+            stats.setConfirmedOrders(stats.getConfirmedOrders() + n);
+        } else if (Orders.DELIVERY_IN_PROGRESS.equals(status)) {
+            stats.setDeliveryInProgressOrders(stats.getDeliveryInProgressOrders() + n);
+        } else if (Orders.COMPLETED.equals(status)) {
+            stats.setCompletedOrders(stats.getCompletedOrders() + n);
+        } else if (Orders.CANCELLED.equals(status)) {
+            stats.setCancelledOrders(stats.getCancelledOrders() + n);
+        }
+    }
+
+    /**
+     * 各天的合计
+     *
+     * @param days
+     * @return
+     */
+    public static DailyBusinessStats sum(Collection<DailyBusinessStats> days) {
+        DailyBusinessStats total = new DailyBusinessStats();
+        days.forEach(day -> add(total, day));
+        return total;
+    }
+
+    /**
+     * 金额（元）换算为分
+     *
+     * @param amount
+     * @return
+     */
+    public static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+
+    /**
+     * 营业额（元）
+     *
+     * @param stats
+     * @return
+     */
+    public static double turnover(DailyBusinessStats stats) {
+        return stats.getTurnover() / 100.0;
+    }
+
+    /**
+     * 换算为营业数据，与WorkspaceService.getBusinessData的口径一致
+     *
+     * @param stats
+     * @return
+     */
+    public static BusinessDataVO toBusinessData(DailyBusinessStats stats) {
+        double turnover = turnover(stats);
+        int validOrderCount = stats.getCompletedOrders();
+        double orderCompletionRate = 0.0;
+        double unitPrice = 0.0;
+        if (stats.getTotalOrders() != 0 && validOrderCount != 0) {
+            orderCompletionRate = (double) validOrderCount / stats.getTotalOrders();
+            unitPrice = turnover / validOrderCount;
+        }
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(stats.getNewUsers())
+                .build();
+    }
+}
@@ -0,0 +1,476 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderArchiveRouting;
+import com.sky.order.OrderEventListener;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 订单事实列式存储
+ *
+ * 启动时把最近若干天的订单（包括已归档的）按列加载到基本类型数组：下单时间（本地时间的分钟数）、金额（分）、
+ * 状态；已完成订单的明细另存一张菜品行表（订单行号、菜品字典编号、数量）。
+ * 之后下单时追加一行，状态流转时修改状态，流转为已完成时追加菜品行；每天凌晨把最早日期推进一天，
+丢弃更早的订单及其菜品行并压缩数组，存储中始终只保留最近若干天的订单。
+ * 统计时对数组做一次顺序扫描、按天累加，行数较多时拆分为多段在ForkJoin公共线程池中并行扫描后合并。
+ *
+ * 数据只反映本实例收到的订单事件，多实例部署时其他实例上的下单和流转需要重启后才能看到；
+ * 每个订单约占用数十字节（主要是id到行号的索引），保留天数决定内存占用。
+ */
+@Component
+@ConditionalOnExpression("'${sky.report.source:raw}' == 'columnar' or '${sky.report.sales-ranking:sql}' == 'columnar'")
+@Slf4j
+public class OrderFactStore implements OrderEventListener {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * 行数超过该值时并行扫描，每段的行数
+     */
+    private static final int PARALLEL_CHUNK = 1 << 16;
+
+    private static final int LOAD_BATCH_SIZE = 2000;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 最早的下单日期，更早的订单不在存储中
+     */
+    private volatile LocalDate since;
+
+    // 订单列
+    private int size;
+    private int[] minutes = new int[INITIAL_CAPACITY];
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private boolean[] hasLines = new boolean[INITIAL_CAPACITY];
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    // 菜品行列
+    private int lineSize;
+    private int[] lineRows = new int[INITIAL_CAPACITY];
+    private int[] lineDishes = new int[INITIAL_CAPACITY];
+    private int[] lineNumbers = new int[INITIAL_CAPACITY];
+    private final Map<String, Integer> dishIds = new HashMap<>();
+    private final List<String> dishNames = new ArrayList<>();
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        since = LocalDate.now().minusDays(reportProperties.getColumnarDays() - 1);
+        LocalDateTime sinceTime = since.atStartOfDay();
+        boolean archived = OrderArchiveRouting.reaches(sinceTime);
+
+        Long afterId = 0L;
+        while (true) {
+            List<Orders> batch = orderMapper.getFactsSince(sinceTime, afterId, LOAD_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> completed = new ArrayList<>();
+            for (Orders orders : batch) {
+                append(orders);
+                if (Orders.COMPLETED.equals(orders.getStatus())) {
+                    completed.add(orders.getId());
+                }
+            }
+            if (!completed.isEmpty()) {
+                appendLines(orderDetailMapper.getDishesByOrderIds(completed, archived));
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        log.info("订单事实列式存储加载完成，订单数: {}，菜品行数: {}，耗时: {}ms", size, lineSize, System.currentTimeMillis() - start);
+    }
+
+    public LocalDate getSince() {
+        return since;
+    }
+
+    /**
+     * 把最早日期推进到保留天数之前，丢弃更早的订单和菜品行
+     */
+    @Scheduled(cron = "0 50 4 * * ?")
+    public void compact() {
+        compact(LocalDate.now());
+    }
+
+    void compact(LocalDate today) {
+        LocalDate newSince = today.minusDays(reportProperties.getColumnarDays() - 1);
+        if (!newSince.isAfter(since)) {
+            return;
+        }
+        int from = minuteOf(newSince.atStartOfDay());
+        int removed;
+        lock.writeLock().lock();
+        try {
+            // 先推进最早日期，之后追加的更早订单直接忽略
+            since = newSince;
+
+            // 保留的订单行依次前移，旧行号 -> 新行号，丢弃的行为 -1
+            int[] moved = new int[size];
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (minutes[i] >= from) {
+                    minutes[kept] = minutes[i];
+                    cents[kept] = cents[i];
+                    statuses[kept] = statuses[i];
+                    hasLines[kept] = hasLines[i];
+                    moved[i] = kept++;
+                } else {
+                    moved[i] = -1;
+                }
+            }
+            removed = size - kept;
+            size = kept;
+            for (Iterator<Map.Entry<Long, Integer>> it = rows.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Integer> entry = it.next();
+                int row = moved[entry.getValue()];
+                if (row < 0) {
+                    it.remove();
+                } else {
+                    entry.setValue(row);
+                }
+            }
+
+            int keptLines = 0;
+            for (int j = 0; j < lineSize; j++) {
+                int row = moved[lineRows[j]];
+                if (row >= 0) {
+                    lineRows[keptLines] = row;
+                    lineDishes[keptLines] = lineDishes[j];
+                    lineNumbers[keptLines] = lineNumbers[j];
+                    keptLines++;
+                }
+            }
+            lineSize = keptLines;
+
+            // 订单量回落较多时缩小数组，不再按历史峰值占用内存
+            if (minutes.length > INITIAL_CAPACITY && size < minutes.length / 4) {
+                int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+                minutes = Arrays.copyOf(minutes, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                hasLines = Arrays.copyOf(hasLines, capacity);
+            }
+            if (lineRows.length > INITIAL_CAPACITY && lineSize < lineRows.length / 4) {
+                int capacity = Math.max(INITIAL_CAPACITY, lineSize * 2);
+                lineRows = Arrays.copyOf(lineRows, capacity);
+                lineDishes = Arrays.copyOf(lineDishes, capacity);
+                lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("订单事实列式存储压缩完成，最早日期: {}，丢弃订单数: {}，剩余订单数: {}", newSince, removed, size);
+    }
+
+    /**
+     * 统计日期范围内每天的订单数、各状态订单数和营业额，不包含新增用户数
+     *
+     * @param begin
+     * @param end
+     * @return 范围内的每一天按日期排列
+     */
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        int days = (int) ChronoUnit.DAYS.between(begin, end) + 1;
+        if (days <= 0) {
+            return new ArrayList<>();
+        }
+        int base = minuteOf(begin.atStartOfDay());
+
+        DayTotals totals;
+        lock.readLock().lock();
+        try {
+            int[] minutes = this.minutes;
+            long[] cents = this.cents;
+            byte[] statuses = this.statuses;
+            int size = this.size;
+            if (size <= PARALLEL_CHUNK) {
+                totals = scan(minutes, cents, statuses, 0, size, base, days);
+            } else {
+                totals = IntStream.range(0, (size + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK)
+                        .parallel()
+                        .mapToObj(chunk -> scan(minutes, cents, statuses, chunk * PARALLEL_CHUNK,
+                                Math.min(size, (chunk + 1) * PARALLEL_CHUNK), base, days))
+                        .reduce(DayTotals::merge)
+                        .orElseGet(() -> new DayTotals(days));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<DailyBusinessStats> list = new ArrayList<>(days);
+        for (int day = 0; day < days; day++) {
+            DailyBusinessStats stats = DailyStats.empty(begin.plusDays(day));
+            stats.setTurnover(totals.turnover[day]);
+            stats.setTotalOrders(totals.orders[day]);
+            for (int status = Orders.PENDING_PAYMENT; status <= Orders.CANCELLED; status++) {
+                DailyStats.addStatus(stats, status, totals.statuses[status * days + day]);
+            }
+            list.add(stats);
+        }
+        return list;
+    }
+
+    /**
+     * 对[from, to)行按天累加
+     */
+    private static DayTotals scan(int[] minutes, long[] cents, byte[] statuses, int from, int to, int base, int days) {
+        DayTotals totals = new DayTotals(days);
+        int span = days * MINUTES_PER_DAY;
+        for (int i = from; i < to; i++) {
+            int offset = minutes[i] - base;
+            if (offset >= 0 && offset < span) {
+                int day = offset / MINUTES_PER_DAY;
+                int status = statuses[i];
+                totals.orders[day]++;
+                totals.statuses[status * days + day]++;
+                if (status == Orders.COMPLETED) {
+                    totals.turnover[day] += cents[i];
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * 统计日期范围内已完成订单中每个菜品的销量
+     *
+     * @param begin
+     * @param end
+     * @return 菜品名称 -> 销量，没有销量的菜品不返回
+     */
+    public Map<String, Integer> getDishSales(LocalDate begin, LocalDate end) {
+        int from = minuteOf(begin.atStartOfDay());
+        int to = minuteOf(end.plusDays(1).atStartOfDay());
+
+        lock.readLock().lock();
+        try {
+            int[] numbers = new int[dishNames.size()];
+            for (int j = 0; j < lineSize; j++) {
+                int row = lineRows[j];
+                int minute = minutes[row];
+                if (statuses[row] == Orders.COMPLETED && minute >= from && minute < to) {
+                    numbers[lineDishes[j]] += lineNumbers[j];
+                }
+            }
+            return IntStream.range(0, numbers.length)
+                    .filter(dish -> numbers[dish] > 0)
+                    .boxed()
+                    .collect(Collectors.toMap(dishNames::get, dish -> numbers[dish]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onCreated(Orders orders) {
+        record(() -> append(orders));
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        List<OrderDetail> details = Orders.COMPLETED.equals(toStatus) && !hasLines(orderId)
+                ? orderDetailMapper.getByOrderId(orderId) : null;
+        record(() -> {
+            setStatus(orderId, toStatus);
+            if (details != null) {
+                appendLines(details);
+            }
+        });
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        List<Long> transitioned = orderIds;
+        if (rows != orderIds.size()) {
+            // 部分订单未修改时，以当前状态判断哪些订单完成了本次流转
+            transitioned = orderMapper.getOrderTimeAndAmountByIds(orderIds).stream()
+                    .filter(orders -> toStatus.equals(orders.getStatus()))
+                    .map(Orders::getId)
+                    .collect(Collectors.toList());
+        }
+        List<Long> needLines = Orders.COMPLETED.equals(toStatus)
+                ? transitioned.stream().filter(orderId -> !hasLines(orderId)).collect(Collectors.toList())
+                : new ArrayList<>();
+        List<OrderDetail> details = needLines.isEmpty() ? null : orderDetailMapper.getDishesByOrderIds(needLines, false);
+
+        List<Long> ids = transitioned;
+        record(() -> {
+            ids.forEach(orderId -> setStatus(orderId, toStatus));
+            if (details != null) {
+                appendLines(details);
+            }
+        });
+    }
+
+    /**
+     * 处于事务中时提交后再修改
+     */
+    private void record(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void append(Orders orders) {
+        if (orders.getOrderTime() == null || orders.getOrderTime().toLocalDate().isBefore(since)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (rows.containsKey(orders.getId())) {
+                return;
+            }
+            if (size == minutes.length) {
+                int capacity = size * 2;
+                minutes = Arrays.copyOf(minutes, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+                statuses = Arrays.copyOf(statuses, capacity);
+                hasLines = Arrays.copyOf(hasLines, capacity);
+            }
+            minutes[size] = minuteOf(orders.getOrderTime());
+            cents[size] = DailyStats.cents(orders.getAmount());
+            statuses[size] = orders.getStatus().byteValue();
+            rows.put(orders.getId(), size);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setStatus(Long orderId, Integer status) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(orderId);
+            if (row != null) {
+                statuses[row] = status.byteValue();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean hasLines(Long orderId) {
+        lock.readLock().lock();
+        try {
+            Integer row = rows.get(orderId);
+            // 不在存储中的订单不需要菜品行
+            return row == null || hasLines[row];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void appendLines(List<OrderDetail> details) {
+        lock.writeLock().lock();
+        try {
+            for (OrderDetail detail : details) {
+                Integer row = rows.get(detail.getOrderId());
+                if (row == null || hasLines[row]) {
+                    continue;
+                }
+                if (lineSize == lineRows.length) {
+                    int capacity = lineSize * 2;
+                    lineRows = Arrays.copyOf(lineRows, capacity);
+                    lineDishes = Arrays.copyOf(lineDishes, capacity);
+                    lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+                }
+                lineRows[lineSize] = row;
+                lineDishes[lineSize] = dishIds.computeIfAbsent(detail.getName(), name -> {
+                    dishNames.add(name);
+                    return dishNames.size() - 1;
+                });
+                lineNumbers[lineSize] = detail.getNumber();
+                lineSize++;
+            }
+            // 同一订单的明细一次追加，全部追加后再标记，重复的事件不会重复追加
+            details.forEach(detail -> {
+                Integer row = rows.get(detail.getOrderId());
+                if (row != null) {
+                    hasLines[row] = true;
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 本地时间的分钟数，按天分组时直接除以一天的分钟数
+     */
+    private static int minuteOf(LocalDateTime time) {
+        return (int) (time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * 按天累加的结果，状态计数按 状态 * 天数 + 天 展开为一维数组
+     */
+    private static class DayTotals {
+
+        private final long[] turnover;
+
+        private final int[] orders;
+
+        private final int[] statuses;
+
+        DayTotals(int days) {
+            turnover = new long[days];
+            orders = new int[days];
+            statuses = new int[(Orders.CANCELLED + 1) * days];
+        }
+
+        DayTotals merge(DayTotals other) {
+            for (int i = 0; i < turnover.length; i++) {
+                turnover[i] += other.turnover[i];
+                orders[i] += other.orders[i];
+            }
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] += other.statuses[i];
+            }
+            return this;
+        }
+    }
+}
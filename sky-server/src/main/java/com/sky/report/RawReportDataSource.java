@@ -0,0 +1,70 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从订单表、用户表聚合：一次按下单日期分组的订单查询，一次按注册日期分组的用户查询，
+ * 今天之前的日期经ReportDayCache缓存
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "source", havingValue = "raw", matchIfMissing = true)
+public class RawReportDataSource implements ReportDataSource {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private ReportDayCache reportDayCache;
+
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        return reportDayCache.getDailyStats(begin, end, this::aggregate);
+    }
+
+    /**
+     * 不经缓存，直接从订单表、用户表聚合
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    protected List<DailyBusinessStats> aggregate(LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyBusinessStats> days = new HashMap<>();
+        for (DailyBusinessStats day : orderMapper.statsGroupByDate(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX))) {
+            days.put(day.getStatDate(), day);
+        }
+        addNewUsers(days, begin, end);
+        return DailyStats.fill(begin, end, days.values());
+    }
+
+    /**
+     * 按注册日期查询新增用户数，累加到对应日期，没有的日期新建
+     *
+     * @param days
+     * @param begin
+     * @param end
+     */
+    protected void addNewUsers(Map<LocalDate, DailyBusinessStats> days, LocalDate begin, LocalDate end) {
+        for (Map<String, Object> row : userMapper.countNewUsersGroupByDate(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX))) {
+            // date为null的一行是开始日期之前的累计用户数
+            if (row.get("date") != null) {
+                LocalDate date = ((java.sql.Date) row.get("date")).toLocalDate();
+                days.computeIfAbsent(date, DailyStats::empty).setNewUsers(((Number) row.get("number")).intValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderEventListener;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 基于redis有序集合的菜品销量排名
+ *
+ * report:sales:yyyyMMdd 中member为菜品名称，score为当天下单、已完成订单中该菜品的销量。
+ * 订单流转为已完成（或从已完成流转出）时在事务提交后累加对应日期的销量；
+ * 查询时以 zunionstore 合并范围内每天的有序集合，取出第limit名及与其销量相同的菜品后按名称排序截断，
+ * 与订单明细聚合的排序规则一致。超出保留天数的范围仍查询订单明细。
+ * 每天凌晨按订单明细重新计算前一天的数据，并与SQL核对最近一周的排名。
+ * redis不可用时不影响订单流转：累加失败的日期在凌晨重新计算，查询改为聚合订单明细。
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "sales-ranking", havingValue = "redis")
+@Slf4j
+public class RedisSalesRanking extends SqlSalesRanking implements OrderEventListener {
+
+    public static final String KEY_PREFIX = "report:sales:";
+
+    /**
+     * 存在时说明有序集合已按订单明细回填
+     */
+    private static final String READY_KEY = KEY_PREFIX + "ready";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 累加失败、需要重新计算的日期
+     */
+    private final Set<LocalDate> failedDates = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(READY_KEY))) {
+            rebuild(retainedSince(), LocalDate.now());
+            stringRedisTemplate.opsForValue().set(READY_KEY, LocalDate.now().toString());
+            log.info("菜品销量排名有序集合回填完成，天数: {}", reportProperties.getSalesRankingDays());
+        }
+    }
+
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int limit) {
+        if (begin.isBefore(retainedSince())) {
+            return super.top(begin, end, limit);
+        }
+        if (begin.isAfter(end)) {
+            return Collections.emptyList();
+        }
+        try {
+            return rank(begin, end, limit);
+        } catch (RuntimeException e) {
+            log.warn("redis查询菜品销量排名失败，改为查询订单明细: {} 至 {}", begin, end, e);
+            return super.top(begin, end, limit);
+        }
+    }
+
+    private List<GoodsSalesDTO> rank(LocalDate begin, LocalDate end, int limit) {
+
+        List<String> keys = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            keys.add(key(date));
+        }
+        String union = KEY_PREFIX + "union:" + UUID.randomUUID();
+        stringRedisTemplate.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), union);
+        try {
+            // 第limit名的销量，销量不低于它的菜品全部取出，按名称排序后再截断
+            Set<TypedTuple<String>> last = stringRedisTemplate.opsForZSet().reverseRangeWithScores(union, limit - 1, limit - 1);
+            double min = last == null || last.isEmpty() ? 0 : last.iterator().next().getScore();
+            Set<TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(union, min, Double.POSITIVE_INFINITY);
+            if (tuples == null) {
+                return Collections.emptyList();
+            }
+            return tuples.stream()
+                    .filter(tuple -> tuple.getScore() > 0)
+                    .map(tuple -> new GoodsSalesDTO(tuple.getValue(), tuple.getScore().intValue()))
+                    .sorted(ORDER)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        } finally {
+            stringRedisTemplate.delete(union);
+        }
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        int sign = sign(fromStatus, toStatus);
+        if (sign == 0) {
+            return;
+        }
+        Orders orders = orderMapper.getById(orderId);
+        if (orders != null) {
+            Map<LocalDate, Map<String, Integer>> sales = new HashMap<>();
+            add(sales, orders.getOrderTime().toLocalDate(), orderDetailMapper.getByOrderId(orderId), sign);
+            record(sales);
+        }
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        int sign = sign(fromStatus, toStatus);
+        if (sign == 0 || orderIds.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDate> dates = new HashMap<>();
+        for (Orders orders : orderMapper.getOrderTimeAndAmountByIds(orderIds)) {
+            // 部分订单未修改时，以当前状态判断哪些订单完成了本次流转
+            if (rows == orderIds.size() || toStatus.equals(orders.getStatus())) {
+                dates.put(orders.getId(), orders.getOrderTime().toLocalDate());
+            }
+        }
+        if (dates.isEmpty()) {
+            return;
+        }
+
+        Map<LocalDate, Map<String, Integer>> sales = new HashMap<>();
+        Map<Long, List<OrderDetail>> details = orderDetailMapper.getDishesByOrderIds(new ArrayList<>(dates.keySet()), false)
+                .stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+        details.forEach((orderId, list) -> add(sales, dates.get(orderId), list, sign));
+        record(sales);
+    }
+
+    /**
+     * 流转为已完成时累加销量，从已完成流转出时扣减销量
+     */
+    private static int sign(Integer fromStatus, Integer toStatus) {
+        if (Orders.COMPLETED.equals(toStatus)) {
+            return 1;
+        }
+        return Orders.COMPLETED.equals(fromStatus) ? -1 : 0;
+    }
+
+    private static void add(Map<LocalDate, Map<String, Integer>> sales, LocalDate date, List<OrderDetail> details, int sign) {
+        Map<String, Integer> day = sales.computeIfAbsent(date, key -> new HashMap<>());
+        for (OrderDetail detail : details) {
+            day.merge(detail.getName(), sign * detail.getNumber(), Integer::sum);
+        }
+    }
+
+    /**
+     * 累加销量，处于事务中时提交后再累加
+     */
+    private void record(Map<LocalDate, Map<String, Integer>> sales) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(sales);
+                }
+            });
+        } else {
+            increment(sales);
+        }
+    }
+
+    /**
+     * redis写入失败不影响订单流转，记下日期，由凌晨的任务按订单明细重新计算
+     */
+    private void increment(Map<LocalDate, Map<String, Integer>> sales) {
+        sales.forEach((date, day) -> {
+            try {
+                day.forEach((name, number) -> stringRedisTemplate.opsForZSet().incrementScore(key(date), name, number));
+            } catch (RuntimeException e) {
+                failedDates.add(date);
+                log.error("累加菜品销量排名失败，等待重新计算: {}", date, e);
+            }
+        });
+    }
+
+    /**
+     * 重新计算前一天以及此前累加失败的日期，并核对最近一周的排名；
+     * 今天累加失败的日期仍在持续累加，留到明天凌晨作为前一天重新计算
+     */
+    @Scheduled(cron = "0 40 4 * * ?")
+    public void compact() {
+        LocalDate today = LocalDate.now();
+        Set<LocalDate> dates = new TreeSet<>();
+        dates.add(today.minusDays(1));
+        for (LocalDate date : failedDates) {
+            if (date.isBefore(today)) {
+                failedDates.remove(date);
+                if (!date.isBefore(retainedSince())) {
+                    dates.add(date);
+                }
+            }
+        }
+
+        for (LocalDate date : dates) {
+            Map<String, Integer> before = read(date);
+            rebuild(date, date);
+            Map<String, Integer> after = read(date);
+            if (!before.equals(after)) {
+                log.warn("菜品销量排名增量与订单明细不一致，已重新计算: {}，菜品数 {} -> {}", date, before.size(), after.size());
+            }
+        }
+        verify(today.minusDays(7), today.minusDays(1), 10);
+    }
+
+    /**
+     * 核对日期范围内的销量排名与订单明细聚合的结果是否一致
+     *
+     * @param begin
+     * @param end
+     * @param limit
+     * @return
+     */
+    public boolean verify(LocalDate begin, LocalDate end, int limit) {
+        List<GoodsSalesDTO> expected = query(begin, end, limit);
+        List<GoodsSalesDTO> actual = top(begin, end, limit);
+        boolean consistent = expected.equals(actual);
+        if (!consistent) {
+            log.warn("菜品销量排名与订单明细不一致: {} 至 {}，SQL: {}，redis: {}", begin, end, expected, actual);
+        }
+        return consistent;
+    }
+
+    /**
+     * 按订单明细重新计算日期范围内每天的有序集合
+     *
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        Map<LocalDate, Set<TypedTuple<String>>> days = new HashMap<>();
+        for (Map<String, Object> row : orderMapper.salesGroupByDate(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX))) {
+            LocalDate date = ((java.sql.Date) row.get("date")).toLocalDate();
+            days.computeIfAbsent(date, key -> new HashSet<>())
+                    .add(new DefaultTypedTuple<>((String) row.get("name"), ((Number) row.get("number")).doubleValue()));
+        }
+
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            String key = key(date);
+            stringRedisTemplate.delete(key);
+            Set<TypedTuple<String>> tuples = days.get(date);
+            if (tuples != null) {
+                stringRedisTemplate.opsForZSet().add(key, tuples);
+                Date expireAt = Date.from(date.plusDays(reportProperties.getSalesRankingDays())
+                        .atStartOfDay(ZoneId.systemDefault()).toInstant());
+                stringRedisTemplate.expireAt(key, expireAt);
+            }
+        }
+    }
+
+    private Map<String, Integer> read(LocalDate date) {
+        Map<String, Integer> day = new HashMap<>();
+        Set<TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(key(date), 0, -1);
+        if (tuples != null) {
+            tuples.stream()
+                    .filter(tuple -> tuple.getScore() > 0)
+                    .forEach(tuple -> day.put(tuple.getValue(), tuple.getScore().intValue()));
+        }
+        return day;
+    }
+
+    private LocalDate retainedSince() {
+        return LocalDate.now().minusDays(reportProperties.getSalesRankingDays() - 1);
+    }
+
+    private static String key(LocalDate date) {
+        return KEY_PREFIX + date.format(SUFFIX);
+    }
+}
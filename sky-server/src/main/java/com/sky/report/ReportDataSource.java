@@ -0,0 +1,30 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 每日营业数据来源，由 sky.report.source 选择实现
+ */
+public interface ReportDataSource {
+
+    /**
+     * 查询日期范围内每天的营业数据
+     *
+     * @param begin
+     * @param end
+     * @return 范围内的每一天按日期排列，没有数据的日期各项为0
+     */
+    List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end);
+
+    /**
+     * 新用户注册，需要增量维护数据的实现覆盖该方法
+     *
+     * @param createTime
+     */
+    default void userRegistered(LocalDateTime createTime) {
+    }
+}
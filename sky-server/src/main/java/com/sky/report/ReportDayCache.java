@@ -0,0 +1,263 @@
+package com.sky.report;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderEventListener;
+import com.sky.order.OrderStatusCounters;
+import com.sky.properties.ReportProperties;
+import com.sky.vo.CacheStatsVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 报表按天缓存
+ *
+ * 今天之前的营业数据和菜品销量通常不再变化，按日期缓存每天的结果，查询时只有缓存中没有的日期和今天
+ * 需要查询数据库，并且合并为一次范围查询。之前日期的订单状态发生流转（如退款）或写入下单时间在今天之前的订单时，
+ * 失效该日期的缓存。每个日期有失效代数，查询开始后日期被失效过时查询结果不放入缓存，避免查询到的旧数据覆盖失效。
+ * 缓存默认不过期，多实例部署时其他实例上的流转不会通知本实例，需要配置过期时间。
+ */
+@Component
+public class ReportDayCache implements OrderEventListener {
+
+    public static final String STATS = "reportDailyStats";
+
+    public static final String SALES = "reportDishSales";
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderStatusCounters orderStatusCounters;
+
+    private Cache<LocalDate, DailyBusinessStats> stats;
+
+    private Cache<LocalDate, Map<String, Integer>> sales;
+
+    /**
+     * 每个日期被失效的次数
+     */
+    private final ConcurrentMap<LocalDate, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        stats = build();
+        sales = build();
+    }
+
+    private <V> Cache<LocalDate, V> build() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(reportProperties.getDayCacheMaximumSize())
+                .recordStats();
+        if (reportProperties.getDayCacheTtlSeconds() > 0) {
+            builder.expireAfterWrite(reportProperties.getDayCacheTtlSeconds(), TimeUnit.SECONDS);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 查询每天的营业数据
+     *
+     * @param begin
+     * @param end
+     * @param loader 查询日期范围内每天的营业数据
+     * @return 范围内的每一天按日期排列
+     */
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end,
+                                                  BiFunction<LocalDate, LocalDate, List<DailyBusinessStats>> loader) {
+        Map<LocalDate, DailyBusinessStats> days = get(stats, begin, end, (from, to) -> {
+            Map<LocalDate, DailyBusinessStats> loaded = new HashMap<>();
+            loader.apply(from, to).forEach(day -> loaded.put(day.getStatDate(), day));
+            return loaded;
+        });
+        return DailyStats.fill(begin, end, days.values());
+    }
+
+    /**
+     * 查询每天每个菜品的销量
+     *
+     * @param begin
+     * @param end
+     * @param loader 查询日期范围内每天每个菜品的销量，每一天都需要返回，没有销量的日期为空Map
+     * @return 日期 -> 菜品名称 -> 销量
+     */
+    public Map<LocalDate, Map<String, Integer>> getDishSales(LocalDate begin, LocalDate end,
+                                                             BiFunction<LocalDate, LocalDate, Map<LocalDate, Map<String, Integer>>> loader) {
+        return get(sales, begin, end, loader);
+    }
+
+    /**
+     * 先取缓存，缺少的日期和今天一次查询，查询到的今天之前的日期在查询期间没有被失效时放入缓存
+     */
+    private <V> Map<LocalDate, V> get(Cache<LocalDate, V> cache, LocalDate begin, LocalDate end,
+                                      BiFunction<LocalDate, LocalDate, Map<LocalDate, V>> loader) {
+        if (!reportProperties.isDayCacheEnabled()) {
+            return loader.apply(begin, end);
+        }
+
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, V> days = new HashMap<>();
+        LocalDate from = null;
+        LocalDate to = null;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            V value = date.isBefore(today) ? cache.getIfPresent(date) : null;
+            if (value != null) {
+                days.put(date, value);
+            } else {
+                from = from == null ? date : from;
+                to = date;
+            }
+        }
+        if (from == null) {
+            return days;
+        }
+
+        Map<LocalDate, Long> loading = new HashMap<>();
+        for (LocalDate date = from; !date.isAfter(to) && date.isBefore(today); date = date.plusDays(1)) {
+            loading.put(date, generation(date).get());
+        }
+
+        Map<LocalDate, V> loaded = loader.apply(from, to);
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            V value = loaded.get(date);
+            if (value == null) {
+                continue;
+            }
+            Long generation = loading.get(date);
+            if (generation != null) {
+                // 失效先增加代数再删除缓存，在同一个键上比较并写入，不会写回失效之前查询到的数据
+                cache.asMap().compute(date, (key, cached) -> generation(key).get() == generation ? value : cached);
+            }
+            days.putIfAbsent(date, value);
+        }
+        return days;
+    }
+
+    /**
+     * 下单时间在今天之前的订单（如跨零点提交）写入后失效该日期的缓存
+     */
+    public void onCreated(Orders orders) {
+        if (!reportProperties.isDayCacheEnabled() || orders.getOrderTime() == null) {
+            return;
+        }
+        LocalDate date = orders.getOrderTime().toLocalDate();
+        if (date.isBefore(LocalDate.now())) {
+            invalidateDates(Collections.singleton(date));
+        }
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        invalidate(Arrays.asList(orderId));
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        invalidate(orderIds);
+    }
+
+    /**
+     * 失效订单下单日期的缓存
+     *
+     * 今天的数据不缓存，已知为今日下单的订单（大多数流转）直接跳过，只为其余订单查询下单时间
+     *
+     * @param orderIds
+     */
+    public void invalidate(List<Long> orderIds) {
+        if (!reportProperties.isDayCacheEnabled() || orderIds.isEmpty()) {
+            return;
+        }
+        List<Long> earlier = orderIds.stream()
+                .filter(orderId -> !orderStatusCounters.isToday(orderId))
+                .collect(Collectors.toList());
+        if (earlier.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        Set<LocalDate> dates = new HashSet<>();
+        for (Orders orders : orderMapper.getOrderTimeAndAmountByIds(earlier)) {
+            LocalDate date = orders.getOrderTime().toLocalDate();
+            if (date.isBefore(today)) {
+                dates.add(date);
+            }
+        }
+        if (!dates.isEmpty()) {
+            invalidateDates(dates);
+        }
+    }
+
+    /**
+     * 失效指定日期的缓存，处于事务中时提交后再失效一次，避免提交前被其他线程以旧数据重新加载
+     *
+     * @param dates
+     */
+    public void invalidateDates(Set<LocalDate> dates) {
+        evict(dates);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(dates);
+                }
+            });
+        }
+    }
+
+    private void evict(Set<LocalDate> dates) {
+        dates.forEach(date -> generation(date).incrementAndGet());
+        stats.invalidateAll(dates);
+        sales.invalidateAll(dates);
+    }
+
+    private AtomicLong generation(LocalDate date) {
+        return generations.computeIfAbsent(date, key -> new AtomicLong());
+    }
+
+    /**
+     * 命中统计
+     *
+     * @return
+     */
+    public List<CacheStatsVO> stats() {
+        List<CacheStatsVO> list = new ArrayList<>();
+        list.add(stats(STATS, stats));
+        list.add(stats(SALES, sales));
+        return list;
+    }
+
+    private static CacheStatsVO stats(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return CacheStatsVO.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .build();
+    }
+}
@@ -0,0 +1,294 @@
+package com.sky.report;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportBusinessException;
+import com.sky.properties.ReportProperties;
+import com.sky.vo.ExportJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 运营数据报表异步导出
+ *
+ * 导出任务提交到固定线程数、有界队列的线程池执行，队列已满时拒绝提交；
+ * 任务把文件写入暂存目录（先写临时文件，完成后改名），执行过程中记录已写出的明细行数作为进度；
+ * 下载时由Tomcat以sendfile把文件从页缓存直接发送到socket，不经过应用的缓冲；容器不支持sendfile时复制到响应输出流。
+ * 任务状态只保存在本实例内存中，完成后超过保留时间的任务和文件定时清理，重启时删除暂存目录中遗留的导出文件。
+ */
+@Component
+@Slf4j
+public class ReportExportJobs {
+
+    public static final Integer QUEUED = 1;
+    public static final Integer RUNNING = 2;
+    public static final Integer SUCCEEDED = 3;
+    public static final Integer FAILED = 4;
+
+    public static final String XLSX = "xlsx";
+    public static final String CSV = "csv";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Tomcat的sendfile请求属性：连接器是否支持，以及要发送的文件和字节范围
+     */
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 导出任务产生的文件名：32位十六进制的任务id加.tmp、.xlsx或.csv
+     */
+    private static final Pattern JOB_FILE = Pattern.compile("[0-9a-f]{32}\\.(tmp|" + XLSX + "|" + CSV + ")");
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private BusinessDataExporter businessDataExporter;
+
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private Path stagingDir;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        ReportProperties.Export export = reportProperties.getExport();
+        stagingDir = Paths.get(export.getStagingDir());
+        Files.createDirectories(stagingDir);
+        // 重启前的任务状态已丢失，遗留的文件无法再下载；只删除导出任务产生的文件，暂存目录配置错误时不会误删其他文件
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir,
+                file -> JOB_FILE.matcher(file.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                delete(file);
+            }
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(export.getWorkers(), export.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(export.getQueueCapacity()),
+                runnable -> new Thread(runnable, "report-export-" + threads.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("报表导出线程池已启动，线程数: {}，暂存目录: {}", export.getWorkers(), stagingDir);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * @param begin
+     * @param end
+     * @param format xlsx或csv
+     * @return
+     */
+    public ExportJobVO submit(LocalDate begin, LocalDate end, String format) {
+        if (!XLSX.equals(format) && !CSV.equals(format)) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_FORMAT_INVALID);
+        }
+
+        Job job = new Job(UUID.randomUUID().toString().replace("-", ""), begin, end, format);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new ReportBusinessException(MessageConstant.EXPORT_BUSY);
+        }
+        log.info("提交报表导出任务: {}，{} 至 {}，格式: {}", job.id, begin, end, format);
+        return job.toVO();
+    }
+
+    /**
+     * 查询导出任务
+     *
+     * @param id
+     * @return
+     */
+    public ExportJobVO get(String id) {
+        return find(id).toVO();
+    }
+
+    /**
+     * 下载已完成的导出文件
+     *
+     * @param id
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    public void download(String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Job job = find(id);
+        if (!SUCCEEDED.equals(job.status)) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_READY);
+        }
+
+        try {
+            long size = Files.size(job.file);
+            response.setContentType(CSV.equals(job.format) ? "text/csv;charset=UTF-8"
+                    : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment; filename=" + job.fileName());
+            response.setContentLengthLong(size);
+
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                // 请求处理结束后由Tomcat发送文件
+                request.setAttribute(SENDFILE_FILENAME, job.file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            Files.copy(job.file, response.getOutputStream());
+            response.flushBuffer();
+        } catch (NoSuchFileException e) {
+            // 下载前刚好被清理
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+    }
+
+    private Job find(String id) {
+        Job job = id == null ? null : jobs.get(id);
+        if (job == null) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void run(Job job) {
+        job.status = RUNNING;
+        long days = ChronoUnit.DAYS.between(job.begin, job.end) + 1;
+        Path temp = stagingDir.resolve(job.id + TEMP_SUFFIX);
+        Path file = stagingDir.resolve(job.id + "." + job.format);
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                // 写出明细时最多到99，文件改名完成后才到100
+                if (CSV.equals(job.format)) {
+                    businessDataExporter.exportCsv(job.begin, job.end, outputStream, rows -> job.progress = (int) (rows * 99 / days));
+                } else {
+                    businessDataExporter.export(job.begin, job.end, outputStream, rows -> job.progress = (int) (rows * 99 / days));
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            job.file = file;
+            job.progress = 100;
+            job.finishTime = LocalDateTime.now();
+            job.status = SUCCEEDED;
+            log.info("报表导出任务完成: {}，文件大小: {}", job.id, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            log.error("报表导出任务失败: {}", job.id, e);
+            delete(temp);
+            job.message = e.getMessage();
+            job.finishTime = LocalDateTime.now();
+            job.status = FAILED;
+        }
+    }
+
+    /**
+     * 清理超过保留时间的任务和文件
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void clean() {
+        LocalDateTime expiry = LocalDateTime.now().minusMinutes(reportProperties.getExport().getRetentionMinutes());
+        jobs.values().removeIf(job -> {
+            if (job.finishTime == null || job.finishTime.isAfter(expiry)) {
+                return false;
+            }
+            if (job.file != null) {
+                delete(job.file);
+            }
+            return true;
+        });
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除导出文件失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 导出任务，由提交线程创建，执行线程更新状态，查询线程读取状态
+     */
+    private static class Job {
+
+        private final String id;
+
+        private final LocalDate begin;
+
+        private final LocalDate end;
+
+        private final String format;
+
+        private final LocalDateTime createTime = LocalDateTime.now();
+
+        private volatile Integer status = QUEUED;
+
+        private volatile int progress;
+
+        private volatile String message;
+
+        private volatile Path file;
+
+        private volatile LocalDateTime finishTime;
+
+        Job(String id, LocalDate begin, LocalDate end, String format) {
+            this.id = id;
+            this.begin = begin;
+            this.end = end;
+            this.format = format;
+        }
+
+        String fileName() {
+            return "business-data-" + begin + "-" + end + "." + format;
+        }
+
+        ExportJobVO toVO() {
+            return ExportJobVO.builder()
+                    .id(id)
+                    .begin(begin)
+                    .end(end)
+                    .format(format)
+                    .status(status)
+                    .progress(progress)
+                    .message(message)
+                    .createTime(createTime)
+                    .finishTime(finishTime)
+                    .build();
+        }
+    }
+}
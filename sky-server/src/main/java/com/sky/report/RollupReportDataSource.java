@@ -0,0 +1,220 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderEventListener;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 从每日汇总表 daily_business_stats 读取营业数据，查询耗时只与天数有关，与订单量无关
+ *
+ * 订单新增、状态流转和用户注册在事务提交后把增量合并到内存中对应日期的待写入数据，
+ * 定时以 insert ... on duplicate key update 累加到汇总表，避免每次下单都更新同一行造成行锁竞争。
+ * 每天凌晨在订单批量完成、归档之后，按订单表、用户表重新计算前一天以及期间有增量的更早日期，修正增量的偏差。
+ * 重新计算与增量的合并、写入互斥，已包含在重新计算结果中的待写入增量直接丢弃，不会重复累加。
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "source", havingValue = "rollup")
+@Slf4j
+public class RollupReportDataSource extends RawReportDataSource implements OrderEventListener {
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 尚未写入汇总表的增量，只在ConcurrentMap.compute中修改
+     */
+    private final ConcurrentMap<LocalDate, DailyBusinessStats> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 合并和写入增量时持有读锁，重新计算时持有写锁
+     */
+    private final ReadWriteLock recomputing = new ReentrantReadWriteLock();
+
+    /**
+     * 今天之前、上次重新计算后有过增量的日期
+     */
+    private final Set<LocalDate> touched = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        if (dailyBusinessStatsMapper.count() == 0) {
+            LocalDate today = LocalDate.now();
+            recompute(today.minusDays(reportProperties.getRollupBackfillDays() - 1), today);
+            log.info("每日营业数据汇总表回填完成，天数: {}", reportProperties.getRollupBackfillDays());
+        }
+    }
+
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        return DailyStats.fill(begin, end, dailyBusinessStatsMapper.getByDateRange(begin, end));
+    }
+
+    public void userRegistered(LocalDateTime createTime) {
+        record(createTime.toLocalDate(), delta -> delta.setNewUsers(delta.getNewUsers() + 1));
+    }
+
+    public void onCreated(Orders orders) {
+        record(orders.getOrderTime().toLocalDate(), delta -> {
+            delta.setTotalOrders(delta.getTotalOrders() + 1);
+            DailyStats.addStatus(delta, orders.getStatus(), 1);
+        });
+    }
+
+    public void onTransition(Long orderId, Integer fromStatus, Integer toStatus) {
+        Orders orders = orderMapper.getById(orderId);
+        if (orders != null) {
+            transition(orders, fromStatus, toStatus);
+        }
+    }
+
+    public void onBulkTransition(List<Long> orderIds, Integer fromStatus, Integer toStatus, int rows) {
+        for (Orders orders : orderMapper.getOrderTimeAndAmountByIds(orderIds)) {
+            // 部分订单未修改时，以当前状态判断哪些订单完成了本次流转
+            if (rows == orderIds.size() || toStatus.equals(orders.getStatus())) {
+                transition(orders, fromStatus, toStatus);
+            }
+        }
+    }
+
+    private void transition(Orders orders, Integer fromStatus, Integer toStatus) {
+        long cents = DailyStats.cents(orders.getAmount());
+        record(orders.getOrderTime().toLocalDate(), delta -> {
+            DailyStats.addStatus(delta, fromStatus, -1);
+            DailyStats.addStatus(delta, toStatus, 1);
+            if (Orders.COMPLETED.equals(toStatus)) {
+                delta.setTurnover(delta.getTurnover() + cents);
+            } else if (Orders.COMPLETED.equals(fromStatus)) {
+                delta.setTurnover(delta.getTurnover() - cents);
+            }
+        });
+    }
+
+    /**
+     * 记录增量，处于事务中时提交后再记录
+     */
+    private void record(LocalDate date, Consumer<DailyBusinessStats> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    merge(date, change);
+                }
+            });
+        } else {
+            merge(date, change);
+        }
+    }
+
+    private void merge(LocalDate date, Consumer<DailyBusinessStats> change) {
+        recomputing.readLock().lock();
+        try {
+            pending.compute(date, (key, delta) -> {
+                DailyBusinessStats merged = delta == null ? DailyStats.empty(key) : delta;
+                change.accept(merged);
+                return merged;
+            });
+            if (date.isBefore(LocalDate.now())) {
+                touched.add(date);
+            }
+        } finally {
+            recomputing.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把待写入的增量累加到汇总表
+     */
+    @Scheduled(fixedDelayString = "${sky.report.rollup-flush-millis:1000}")
+    public void flush() {
+        recomputing.readLock().lock();
+        try {
+            for (LocalDate date : pending.keySet()) {
+                DailyBusinessStats delta = pending.remove(date);
+                if (delta == null) {
+                    continue;
+                }
+                try {
+                    dailyBusinessStatsMapper.increment(delta);
+                } catch (RuntimeException e) {
+                    log.error("每日营业数据增量写入失败: {}", date, e);
+                    merge(date, current -> DailyStats.add(current, delta));
+                }
+            }
+        } finally {
+            recomputing.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重新计算前一天以及上次重新计算后有过增量的更早日期
+     */
+    @Scheduled(cron = "0 30 4 * * ?")
+    public void compact() {
+        LocalDate today = LocalDate.now();
+        LocalDate since = today.minusDays(reportProperties.getRollupBackfillDays() - 1);
+        Set<LocalDate> dates = new TreeSet<>();
+        dates.add(today.minusDays(1));
+        for (LocalDate date : touched) {
+            if (date.isBefore(today)) {
+                touched.remove(date);
+                if (!date.isBefore(since)) {
+                    dates.add(date);
+                }
+            }
+        }
+
+        for (LocalDate date : dates) {
+            recompute(date, date);
+        }
+        log.info("每日营业数据重新计算完成: {}", dates);
+    }
+
+    /**
+     * 按订单表、用户表重新计算日期范围内的数据并覆盖汇总表
+     *
+     * 计算期间暂停合并和写入增量：此前已提交的订单和用户都包含在计算结果中，
+     * 范围内尚未写入汇总表的增量丢弃，之后提交的增量在计算完成后再合并
+     *
+     * @param begin
+     * @param end
+     */
+    public void recompute(LocalDate begin, LocalDate end) {
+        recomputing.writeLock().lock();
+        try {
+            List<DailyBusinessStats> days = aggregate(begin, end);
+            pending.keySet().removeIf(date -> !date.isBefore(begin) && !date.isAfter(end));
+            for (DailyBusinessStats day : days) {
+                dailyBusinessStatsMapper.save(day);
+            }
+        } finally {
+            recomputing.writeLock().unlock();
+        }
+    }
+}
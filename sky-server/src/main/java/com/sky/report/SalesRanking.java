@@ -0,0 +1,43 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 菜品销量排名，由 sky.report.sales-ranking 选择实现
+ */
+public interface SalesRanking {
+
+    /**
+     * 销量从高到低，销量相同时按名称的UTF-8字节排列，与SQL中的 cast(name as binary) 一致
+     */
+    Comparator<GoodsSalesDTO> ORDER = Comparator
+            .comparing(GoodsSalesDTO::getNumber, Comparator.reverseOrder())
+            .thenComparing(GoodsSalesDTO::getName, SalesRanking::compareName);
+
+    /**
+     * 查询日期范围内已完成订单的菜品销量排名
+     *
+     * @param begin
+     * @param end
+     * @param limit 返回的菜品数
+     * @return 按销量从高到低排列，销量相同时按菜品名称排列
+     */
+    List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int limit);
+
+    static int compareName(String a, String b) {
+        byte[] x = a.getBytes(StandardCharsets.UTF_8);
+        byte[] y = b.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.min(x.length, y.length); i++) {
+            int diff = (x[i] & 0xff) - (y[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return x.length - y.length;
+    }
+}
@@ -0,0 +1,76 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 关联订单明细和订单表聚合销量，今天之前每天的销量经ReportDayCache缓存后在内存中合并排名
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.report", name = "sales-ranking", havingValue = "sql", matchIfMissing = true)
+public class SqlSalesRanking implements SalesRanking {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private ReportDayCache reportDayCache;
+
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int limit) {
+        if (!reportProperties.isDayCacheEnabled()) {
+            return query(begin, end, limit);
+        }
+
+        Map<String, Integer> total = new HashMap<>();
+        reportDayCache.getDishSales(begin, end, this::dishSales).values()
+                .forEach(day -> day.forEach((name, number) -> total.merge(name, number, Integer::sum)));
+        return total.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(entry -> new GoodsSalesDTO(entry.getKey(), entry.getValue()))
+                .sorted(ORDER)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 不经缓存，直接查询日期范围内的销量排名
+     *
+     * @param begin
+     * @param end
+     * @param limit
+     * @return
+     */
+    protected List<GoodsSalesDTO> query(LocalDate begin, LocalDate end, int limit) {
+        return orderMapper.getSalesTop(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX), limit);
+    }
+
+    /**
+     * 按天查询每个菜品的销量，没有销量的日期为空Map
+     */
+    private Map<LocalDate, Map<String, Integer>> dishSales(LocalDate begin, LocalDate end) {
+        Map<LocalDate, Map<String, Integer>> days = new HashMap<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            days.put(date, new HashMap<>());
+        }
+        for (Map<String, Object> row : orderMapper.salesGroupByDate(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX))) {
+            LocalDate date = ((java.sql.Date) row.get("date")).toLocalDate();
+            days.get(date).put((String) row.get("name"), ((Number) row.get("number")).intValue());
+        }
+        return days;
+    }
+}
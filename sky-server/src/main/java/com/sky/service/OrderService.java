@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -37,6 +38,16 @@ public interface OrderService {
      */
     PageResult pageQuery4User(int pageNum, int pageSize, Integer status);
 
+    /**
+     * 用户端历史订单游标分页查询
+     * @param cursor
+     * @param pageSize
+     * @param status
+     * @param withTotal
+     * @return
+     */
+    CursorPageResult cursorQuery4User(String cursor, int pageSize, Integer status, boolean withTotal);
+
     /**
      * 查询订单详情
      * @param id
@@ -63,6 +74,13 @@ public interface OrderService {
      */
     PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 商家游标分页查询订单
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    CursorPageResult conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO);
+
     /**
      * 订单状态统计
      * @return
@@ -1,10 +1,12 @@
 package com.sky.service;
 
+import com.sky.vo.ExportJobVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 
@@ -46,7 +48,33 @@ public interface ReportService {
 
     /**
      * 导出运营数据报表
+     * @param startDate 为null时导出最近30天
+     * @param endDate
+     * @param response
+     */
+    void exportBusinessData(LocalDate startDate, LocalDate endDate, HttpServletResponse response);
+
+    /**
+     * 提交运营数据报表异步导出任务
+     * @param startDate 为null时导出最近30天
+     * @param endDate
+     * @param format xlsx或csv
+     * @return
+     */
+    ExportJobVO submitExportJob(LocalDate startDate, LocalDate endDate, String format);
+
+    /**
+     * 查询导出任务的状态和进度
+     * @param id
+     * @return
+     */
+    ExportJobVO getExportJob(String id);
+
+    /**
+     * 下载导出任务生成的文件
+     * @param id
+     * @param request
      * @param response
      */
-    void exportBusinessData(HttpServletResponse response);
+    void downloadExportJob(String id, HttpServletRequest request, HttpServletResponse response);
 }
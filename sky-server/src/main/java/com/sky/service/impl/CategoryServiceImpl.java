@@ -1,7 +1,6 @@
 package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
-import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
@@ -12,6 +11,7 @@ import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.CategoryMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.page.PageCountCache;
 import com.sky.result.PageResult;
 import com.sky.service.CategoryService;
 import lombok.extern.slf4j.Slf4j;
@@ -34,6 +34,8 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private PageCountCache pageCountCache;
 
     /**
      * 新增分类
@@ -59,9 +61,10 @@ public class CategoryServiceImpl implements CategoryService {
      * @return
      */
     public PageResult pageQuery(CategoryPageQueryDTO categoryPageQueryDTO) {
-        PageHelper.startPage(categoryPageQueryDTO.getPage(),categoryPageQueryDTO.getPageSize());
-        //下一条sql进行分页，自动加入limit关键字分页
-        Page<Category> page = categoryMapper.pageQuery(categoryPageQueryDTO);
+        //总记录数命中缓存时只执行limit查询
+        Page<Category> page = pageCountCache.query("category", categoryPageQueryDTO,
+                categoryPageQueryDTO.getPage(), categoryPageQueryDTO.getPageSize(),
+                () -> categoryMapper.pageQuery(categoryPageQueryDTO));
         return new PageResult(page.getTotal(), page.getResult());
     }
 
@@ -1,7 +1,6 @@
 package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
-import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -12,6 +11,8 @@ import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
+import com.sky.order.OrderPricingEngine;
+import com.sky.page.PageCountCache;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
@@ -38,6 +39,12 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private OrderPricingEngine orderPricingEngine;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
     /**
      * 新增菜品和对应口味
      *
@@ -62,6 +69,8 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -72,9 +81,9 @@ public class DishServiceImpl implements DishService {
      */
     public PageResult pageQuery(DishPageQueryDTO dishPageQueryDTO) {
 
-        PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
-
-        Page<DishVO> page = dishMapper.pageQuery(dishPageQueryDTO);
+        Page<DishVO> page = pageCountCache.query("dish", dishPageQueryDTO,
+                dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize(),
+                () -> dishMapper.pageQuery(dishPageQueryDTO));
 
         return new PageResult(page.getTotal(), page.getResult());
     }
@@ -108,6 +117,8 @@ public class DishServiceImpl implements DishService {
 
         // 根据的id集合删除菜品关联的口味数据
         dishFlavorMapper.deleteByDishIds(ids);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -157,6 +168,8 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -172,6 +185,8 @@ public class DishServiceImpl implements DishService {
                 .build();
 
         dishMapper.update(dish);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
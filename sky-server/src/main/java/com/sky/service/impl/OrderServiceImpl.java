@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cart.CartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -12,8 +13,25 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.MenuSnapshot;
+import com.sky.order.OrderArchiveRouting;
+import com.sky.order.OrderArchiver;
+import com.sky.order.OrderCursor;
+import com.sky.order.OrderDetailCache;
+import com.sky.order.OrderEvents;
+import com.sky.order.OrderPricingEngine;
+import com.sky.order.OrderSearchFilter;
+import com.sky.order.OrderSearchIndex;
+import com.sky.order.OrderStateMachine;
+import com.sky.order.OrderStatusCounters;
+import com.sky.order.OrderSubmitPipeline;
+import com.sky.order.OrderTimeoutScheduler;
+import com.sky.page.PageCountCache;
+import com.sky.properties.PageProperties;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.utils.OrderNumberGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -24,11 +42,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -45,7 +65,7 @@ public class OrderServiceImpl implements OrderService {
     private AddressBookMapper addressBookMapper;
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
 
     @Autowired
     private UserMapper userMapper;
@@ -56,16 +76,56 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private WebSocketServer webSocketServer;
 
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private OrderSubmitPipeline orderSubmitPipeline;
+
+    @Autowired
+    private OrderPricingEngine orderPricingEngine;
+
+    @Autowired
+    private OrderTimeoutScheduler orderTimeoutScheduler;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Autowired
+    private OrderEvents orderEvents;
+
+    @Autowired
+    private OrderStatusCounters orderStatusCounters;
+
+    @Autowired
+    private OrderSearchIndex orderSearchIndex;
+
+    @Autowired
+    private OrderDetailCache orderDetailCache;
+
+    @Autowired
+    private OrderArchiver orderArchiver;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
+    @Autowired
+    private PageProperties pageProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     private static final Integer ORDER_REMINDER = 1;
     private static final Integer COSTUMER_REMINDER = 2;
 
+    private static final int DEFAULT_CURSOR_PAGE_SIZE = 10;
+
     /**
      * 用户下单
      *
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
 
         // 处理业务异常
@@ -76,41 +136,62 @@ public class OrderServiceImpl implements OrderService {
         }
         // 购物车为空
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> list = cartStore.list(userId);
         if (list == null || list.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        // 向订单表插入一条数据
+        // 按服务端菜单价格和购物车商品份数重新计价，不信任客户端传入的金额和打包费
+        int packAmount = orderPricingEngine.packAmount(list);
+        if (ordersSubmitDTO.getPackAmount() != null && ordersSubmitDTO.getPackAmount() != packAmount) {
+            log.warn("下单打包费与服务端计算不一致，用户: {}, 客户端: {}, 服务端: {}", userId, ordersSubmitDTO.getPackAmount(), packAmount);
+        }
+        BigDecimal amount = MenuSnapshot.fromCents(orderPricingEngine.priceOrder(list, packAmount));
+        if (ordersSubmitDTO.getAmount() != null && ordersSubmitDTO.getAmount().compareTo(amount) != 0) {
+            log.warn("下单金额与服务端计价不一致，用户: {}, 客户端: {}, 服务端: {}", userId, ordersSubmitDTO.getAmount(), amount);
+        }
+
+        // 构造订单数据
         Orders orders = new Orders();
-        BeanUtils.copyProperties(ordersSubmitDTO, orders);
+        BeanUtils.copyProperties(ordersSubmitDTO, orders, "packAmount");
+        orders.setAmount(amount);
+        orders.setPackAmount(packAmount);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(orderNumberGenerator.nextNumber());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
         orders.setAddress(addressBook.getProvinceName() + addressBook.getCityName() +
                 addressBook.getDistrictName() + addressBook.getDetail());
 
-        orderMapper.insert(orders);
-
-        // 向订单明细表插入数据
+        // 构造订单明细数据
         List<OrderDetail> orderDetailList = new ArrayList<>();
         for (ShoppingCart cart : list) {
             OrderDetail orderDetail = new OrderDetail();
             BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(orders.getId());
             orderDetailList.add(orderDetail);
         }
-        orderDetailMapper.insertBatch(orderDetailList);
 
-        // 清空当前用户购物车数据
+        // 开启批量提交时与其他下单请求合并写库（同一事务中清空购物车），否则单独开启事务写库
+        if (!orderSubmitPipeline.isEnabled() || !orderSubmitPipeline.submit(orders, orderDetailList)) {
+            transactionTemplate.executeWithoutResult(status -> {
+                // 向订单表插入一条数据
+                orderMapper.insert(orders);
 
-        shoppingCartMapper.deleteByUserId(userId);
+                // 向订单明细表插入数据
+                orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(orders.getId()));
+                orderDetailMapper.insertBatch(orderDetailList);
+
+                // 清空当前用户购物车数据
+                cartStore.clear(userId);
+            });
+        }
+
+        // 登记超时未付款自动取消
+        orderTimeoutScheduler.register(orders.getId(), orders.getOrderTime());
+        orderEvents.created(orders);
 
         // 封装VO返回结果
         return OrderSubmitVO.builder()
@@ -198,15 +279,27 @@ public class OrderServiceImpl implements OrderService {
         // 根据订单号查询订单
         Orders ordersDB = orderMapper.getByNumber(outTradeNo);
 
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
+        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间；重复的支付通知不再处理
         Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
                 .payStatus(Orders.PAID)
                 .checkoutTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        if (!orderStateMachine.tryFire(ordersDB.getId(), OrderStateMachine.Transition.PAY, orders)) {
+            // 订单已被取消（如刚好超时取消）时用户已经付款，标记为退款；已支付的订单说明是重复的支付通知
+            Orders refund = Orders.builder()
+                    .id(ordersDB.getId())
+                    .payStatus(Orders.REFUND)
+                    .checkoutTime(orders.getCheckoutTime())
+                    .build();
+            if (orderMapper.updatePayStatus(refund, Orders.CANCELLED, Orders.UN_PAID) > 0) {
+                log.error("订单已取消但收到支付通知，已标记为退款，需要退款: {}", outTradeNo);
+            } else {
+                log.info("订单已支付，忽略重复的支付通知: {}", outTradeNo);
+            }
+            return;
+        }
+        orderTimeoutScheduler.remove(ordersDB.getId());
 
         // 通过websocket向客户端浏览器推送信息
         Map map = new HashMap();
@@ -228,26 +321,97 @@ public class OrderServiceImpl implements OrderService {
      */
     public PageResult pageQuery4User(int pageNum, int pageSize, Integer status) {
 
+        pageSize = Math.min(pageSize, pageProperties.getMaxPageSize());
         PageHelper.startPage(pageNum, pageSize);
         OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+        ordersPageQueryDTO.setPage(pageNum);
+        ordersPageQueryDTO.setPageSize(pageSize);
+        ordersPageQueryDTO.setStatus(status);
+        ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
+
+        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO, null);
+
+        List<OrderVO> list = toOrderVOListWithDetails(page);
+
+        return new PageResult(page.getTotal(), list);
+    }
+
+    /**
+     * 历史订单游标分页查询
+     *
+     * @param cursor
+     * @param pageSize
+     * @param status
+     * @param withTotal
+     * @return
+     */
+    public CursorPageResult cursorQuery4User(String cursor, int pageSize, Integer status, boolean withTotal) {
+
+        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+        ordersPageQueryDTO.setPageSize(pageSize);
+        ordersPageQueryDTO.setCursor(cursor);
+        ordersPageQueryDTO.setWithTotal(withTotal);
         ordersPageQueryDTO.setStatus(status);
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
 
-        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
+        return cursorQuery(ordersPageQueryDTO, this::toOrderVOListWithDetails);
+    }
+
+    /**
+     * 按下单时间、id倒序做游标分页：多查一条判断是否还有下一页，只有请求时才统计总数
+     *
+     * @param ordersPageQueryDTO
+     * @param converter
+     * @return
+     */
+    private CursorPageResult cursorQuery(OrdersPageQueryDTO ordersPageQueryDTO, Function<List<Orders>, List<OrderVO>> converter) {
+
+        // 与分页查询相同的每页最大行数，同时避免 pageSize + 1 溢出
+        int pageSize = ordersPageQueryDTO.getPageSize() > 0
+                ? Math.min(ordersPageQueryDTO.getPageSize(), pageProperties.getMaxPageSize()) : DEFAULT_CURSOR_PAGE_SIZE;
+        OrderCursor cursor = OrderCursor.decode(ordersPageQueryDTO.getCursor());
+
+        OrderSearchFilter search = orderSearchIndex.filter(ordersPageQueryDTO.getNumber(), ordersPageQueryDTO.getPhone(),
+                ordersPageQueryDTO.getBeginTime());
+
+        List<Orders> ordersList = orderMapper.cursorQuery(ordersPageQueryDTO, search, cursor, pageSize + 1);
+
+        String nextCursor = null;
+        if (ordersList.size() > pageSize) {
+            ordersList = ordersList.subList(0, pageSize);
+            nextCursor = OrderCursor.encode(ordersList.get(pageSize - 1));
+        }
+
+        Long total = ordersPageQueryDTO.isWithTotal() ? orderMapper.countByQuery(ordersPageQueryDTO, search) : null;
+
+        return new CursorPageResult(converter.apply(ordersList), nextCursor, total);
+    }
+
+    /**
+     * 封装订单列表，附带订单明细
+     *
+     * @param ordersList
+     * @return
+     */
+    private List<OrderVO> toOrderVOListWithDetails(List<Orders> ordersList) {
 
         List<OrderVO> list = new ArrayList<>();
 
-        if(page != null && page.getTotal() > 0){
-            for (Orders orders : page) {
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orders.getId());
+        if(ordersList != null && !ordersList.isEmpty()){
+            // 一次查询本页所有订单的明细，再按订单id分组
+            List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+            Map<Long, List<OrderDetail>> orderDetailMap = orderDetailMapper.getDishesByOrderIds(orderIds, OrderArchiveRouting.reachesOrders(ordersList)).stream()
+                    .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+
+            for (Orders orders : ordersList) {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList()));
                 list.add(orderVO);
             }
         }
 
-        return new PageResult(page.getTotal(), list);
+        return list;
     }
 
     /**
@@ -258,9 +422,30 @@ public class OrderServiceImpl implements OrderService {
      */
     public OrderVO details(Long id) {
 
+        return orderDetailCache.get(id, this::loadDetails);
+    }
+
+    /**
+     * 查询订单及明细，组装订单详情
+     *
+     * @param id
+     * @return
+     */
+    private OrderVO loadDetails(Long id) {
+
         Orders orders = orderMapper.getById(id);
+        List<OrderDetail> orderDetailList;
+        if (orders != null) {
+            orderDetailList = orderDetailMapper.getByOrderId(id);
+        } else {
+            // 线上表中不存在时再查归档表
+            orders = orderArchiver.getById(id);
+            if (orders == null) {
+                throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+            }
+            orderDetailList = orderArchiver.getDetails(id);
+        }
 
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
         OrderVO orderVO = new OrderVO();
         BeanUtils.copyProperties(orders, orderVO);
         orderVO.setOrderDetailList(orderDetailList);
@@ -275,31 +460,14 @@ public class OrderServiceImpl implements OrderService {
      */
     public void userCancelById(Long id) {
 
-        Orders orders = orderMapper.getById(id);
-
-        // 检查订单是否存在
-        if(orders == null){
-            throw new OrderBusinessException((MessageConstant.ORDER_NOT_FOUND));
-        }
-        // 订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
-        if(orders.getStatus() > 2) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        if(orders.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-//            //调用微信支付退款接口
-//            weChatPayUtil.refund(
-//                    ordersDB.getNumber(), //商户订单号
-//                    ordersDB.getNumber(), //商户退款单号
-//                    new BigDecimal(0.01),//退款金额，单位 元
-//                    new BigDecimal(0.01));//原订单金额
-            orders.setStatus(Orders.REFUND);
-        }
+        // 待付款、待接单的订单可以取消，待接单的订单已支付，由状态机标记为退款
+        Orders orders = Orders.builder()
+                .cancelTime(LocalDateTime.now())
+                .cancelReason("用户取消")
+                .build();
 
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelTime(LocalDateTime.now());
-        orders.setCancelReason("用户取消");
-        orderMapper.update(orders);
+        orderStateMachine.fire(id, OrderStateMachine.Transition.USER_CANCEL, orders);
+        orderTimeoutScheduler.remove(id);
     }
 
     /**
@@ -309,6 +477,9 @@ public class OrderServiceImpl implements OrderService {
      */
     public void repetition(Long id) {
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
+        if (orderDetailList.isEmpty()) {
+            orderDetailList = orderArchiver.getDetails(id);
+        }
         List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(orderDetail -> {
             ShoppingCart shoppingCart = new ShoppingCart();
             BeanUtils.copyProperties(orderDetail, shoppingCart);
@@ -317,7 +488,7 @@ public class OrderServiceImpl implements OrderService {
             return shoppingCart;
         }).collect(Collectors.toList());
 
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        cartStore.insertBatch(shoppingCartList);
     }
 
     /**
@@ -328,19 +499,54 @@ public class OrderServiceImpl implements OrderService {
      */
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
 
-        // 使用PageHelper进行分页
-        PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
-        // 查询订单并返回分页结果
-        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
+        // 订单号、手机号先在搜索索引中取候选订单，避免前置通配符的like全表扫描
+        OrderSearchFilter search = orderSearchIndex.filter(ordersPageQueryDTO.getNumber(), ordersPageQueryDTO.getPhone(),
+                ordersPageQueryDTO.getBeginTime());
+
+        // 每页行数同时用于归档查询各分支的行数限制，与PageHelper使用相同的上限
+        ordersPageQueryDTO.setPageSize(Math.min(ordersPageQueryDTO.getPageSize(), pageProperties.getMaxPageSize()));
+
+        // 使用PageHelper进行分页，总记录数命中缓存时只执行limit查询
+        Page<Orders> page = pageCountCache.query("orders", ordersPageQueryDTO,
+                ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize(),
+                () -> orderMapper.pageQuery(ordersPageQueryDTO, search));
 
         List<Orders> orderList = page.getResult();
         if (CollectionUtils.isEmpty(orderList)) {
             return new PageResult(page.getTotal(), Collections.emptyList());
         }
 
+        List<OrderVO> orderVOList = toOrderVOListWithDishes(orderList);
+
+        return new PageResult(page.getTotal(), orderVOList);
+    }
+
+    /**
+     * 商家游标分页查询订单
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    public CursorPageResult conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+
+        return cursorQuery(ordersPageQueryDTO, this::toOrderVOListWithDishes);
+    }
+
+    /**
+     * 封装订单列表，附带格式化后的菜品信息
+     *
+     * @param orderList
+     * @return
+     */
+    private List<OrderVO> toOrderVOListWithDishes(List<Orders> orderList) {
+
+        if (CollectionUtils.isEmpty(orderList)) {
+            return Collections.emptyList();
+        }
+
         // 查询所有相关订单的菜品信息
         List<Long> orderIds = orderList.stream().map(Orders::getId).collect(Collectors.toList());
-        List<OrderDetail> orderDetails = orderDetailMapper.getDishesByOrderIds(orderIds);
+        List<OrderDetail> orderDetails = orderDetailMapper.getDishesByOrderIds(orderIds, OrderArchiveRouting.reachesOrders(orderList));
 
         // 将菜品信息按订单ID进行分组
         Map<Long, List<OrderDetail>> orderDishesMap = orderDetails.stream()
@@ -361,7 +567,7 @@ public class OrderServiceImpl implements OrderService {
             return orderVO;
         }).collect(Collectors.toList());
 
-        return new PageResult(page.getTotal(), orderVOList);
+        return orderVOList;
     }
 
     /**
@@ -383,9 +589,10 @@ public class OrderServiceImpl implements OrderService {
     public OrderStatisticsVO statistics() {
         OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO();
 
-        Integer toBeConfirmed = orderMapper.countStatus(Orders.TO_BE_CONFIRMED);
-        Integer confirmed = orderMapper.countStatus(Orders.CONFIRMED);
-        Integer deliveryInProgress = orderMapper.countStatus(Orders.DELIVERY_IN_PROGRESS);
+        // 直接读取内存中的状态计数
+        Integer toBeConfirmed = orderStatusCounters.count(Orders.TO_BE_CONFIRMED);
+        Integer confirmed = orderStatusCounters.count(Orders.CONFIRMED);
+        Integer deliveryInProgress = orderStatusCounters.count(Orders.DELIVERY_IN_PROGRESS);
 
         orderStatisticsVO.setToBeConfirmed(toBeConfirmed);
         orderStatisticsVO.setConfirmed(confirmed);
@@ -400,12 +607,7 @@ public class OrderServiceImpl implements OrderService {
      */
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
 
-        Orders orders = Orders.builder()
-                .id(ordersConfirmDTO.getId())
-                .status(Orders.CONFIRMED)
-                .build();
-
-        orderMapper.update(orders);
+        orderStateMachine.fire(ordersConfirmDTO.getId(), OrderStateMachine.Transition.CONFIRM, null);
     }
 
     /**
@@ -415,28 +617,13 @@ public class OrderServiceImpl implements OrderService {
      */
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) {
 
-        Orders orders = orderMapper.getById(ordersRejectionDTO.getId());
-
-        if(orders == null || !Objects.equals(orders.getStatus(), Orders.TO_BE_CONFIRMED)){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        if(Objects.equals(orders.getPayStatus(), Orders.PAID)){
-//            //用户已支付，需要退款
-//            String refund = weChatPayUtil.refund(
-//                    ordersDB.getNumber(),
-//                    ordersDB.getNumber(),
-//                    new BigDecimal(0.01),
-//                    new BigDecimal(0.01));
-//            log.info("申请退款：{}", refund);
-            orders.setPayStatus(Orders.REFUND);
-        }
-
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelTime(LocalDateTime.now());
-        orders.setRejectionReason(ordersRejectionDTO.getRejectionReason());
+        // 只有待接单的订单可以拒单，已支付的订单由状态机标记为退款
+        Orders orders = Orders.builder()
+                .cancelTime(LocalDateTime.now())
+                .rejectionReason(ordersRejectionDTO.getRejectionReason())
+                .build();
 
-        orderMapper.update(orders);
+        orderStateMachine.fire(ordersRejectionDTO.getId(), OrderStateMachine.Transition.REJECT, orders);
     }
 
     /**
@@ -446,24 +633,14 @@ public class OrderServiceImpl implements OrderService {
      */
     public void cancel(OrdersCancelDTO ordersCancelDTO) {
 
-        Orders orders = orderMapper.getById(ordersCancelDTO.getId());
-
-        if(Objects.equals(orders.getPayStatus(), Orders.PAID)) {
-//            //用户已支付，需要退款
-//            String refund = weChatPayUtil.refund(
-//                    ordersDB.getNumber(),
-//                    ordersDB.getNumber(),
-//                    new BigDecimal(0.01),
-//                    new BigDecimal(0.01));
-//            log.info("申请退款：{}", refund);
-            orders.setPayStatus(Orders.REFUND);
-        }
-
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelTime(LocalDateTime.now());
-        orders.setCancelReason(ordersCancelDTO.getCancelReason());
+        // 已支付的订单由状态机标记为退款
+        Orders orders = Orders.builder()
+                .cancelTime(LocalDateTime.now())
+                .cancelReason(ordersCancelDTO.getCancelReason())
+                .build();
 
-        orderMapper.update(orders);
+        orderStateMachine.fire(ordersCancelDTO.getId(), OrderStateMachine.Transition.CANCEL, orders);
+        orderTimeoutScheduler.remove(ordersCancelDTO.getId());
     }
 
     /**
@@ -473,15 +650,7 @@ public class OrderServiceImpl implements OrderService {
      */
     public void delivery(Long id) {
 
-        Orders orders = orderMapper.getById(id);
-
-        if(orders == null || !Objects.equals(orders.getStatus(), Orders.CONFIRMED)){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
-
-        orderMapper.update(orders);
+        orderStateMachine.fire(id, OrderStateMachine.Transition.DELIVER, null);
     }
 
     /**
@@ -491,16 +660,11 @@ public class OrderServiceImpl implements OrderService {
      */
     public void complete(Long id) {
 
-        Orders orders = orderMapper.getById(id);
-
-        if(orders == null || !Objects.equals(orders.getStatus(), Orders.DELIVERY_IN_PROGRESS)){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        orders.setStatus(Orders.COMPLETED);
-        orders.setDeliveryTime(LocalDateTime.now());
+        Orders orders = Orders.builder()
+                .deliveryTime(LocalDateTime.now())
+                .build();
 
-        orderMapper.update(orders);
+        orderStateMachine.fire(id, OrderStateMachine.Transition.COMPLETE, orders);
     }
 
     /**
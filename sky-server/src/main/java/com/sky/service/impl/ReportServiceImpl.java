@@ -1,33 +1,30 @@
 package com.sky.service.impl;
 
+import com.sky.constant.MessageConstant;
 import com.sky.dto.GoodsSalesDTO;
-import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.exception.ReportBusinessException;
 import com.sky.mapper.UserMapper;
+import com.sky.report.BusinessDataExporter;
+import com.sky.report.DailyStats;
+import com.sky.report.ReportDataSource;
+import com.sky.report.ReportExportJobs;
+import com.sky.report.SalesRanking;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,13 +32,19 @@ import java.util.stream.Collectors;
 public class ReportServiceImpl implements ReportService {
 
     @Autowired
-    private OrderMapper orderMapper;
+    private UserMapper userMapper;
 
     @Autowired
-    private UserMapper userMapper;
+    private BusinessDataExporter businessDataExporter;
+
+    @Autowired
+    private ReportDataSource reportDataSource;
+
+    @Autowired
+    private SalesRanking salesRanking;
 
     @Autowired
-    private WorkspaceService workspaceService;
+    private ReportExportJobs reportExportJobs;
 
     /**
      * 营业额统计
@@ -54,24 +57,8 @@ public class ReportServiceImpl implements ReportService {
 
         List<LocalDate> dateList = getDateList(startDate, endDate);
 
-        Map<String, Object> map = new HashMap<>();
-        map.put("start", LocalDateTime.of(startDate, LocalTime.MIN));
-        map.put("end", LocalDateTime.of(endDate, LocalTime.MAX));
-        map.put("status", Orders.COMPLETED);
-
-        List<Map<String, Object>> turnovers = orderMapper.sumByMapList(map);
-
-        Map<LocalDate, Double> turnoverMap = new HashMap<>();
-        for (Map<String, Object> turnover : turnovers) {
-            java.sql.Date sqlDate = (java.sql.Date) turnover.get("date");
-            LocalDate date = sqlDate.toLocalDate();
-            BigDecimal amountBigDecimal = (BigDecimal) turnover.get("amount");
-            Double amount = amountBigDecimal.doubleValue();
-            turnoverMap.put(date, amount);
-        }
-
-        List<Double> turnoverList = dateList.stream()
-                .map(date -> turnoverMap.getOrDefault(date, 0.0))
+        List<Double> turnoverList = reportDataSource.getDailyStats(startDate, endDate).stream()
+                .map(DailyStats::turnover)
                 .collect(Collectors.toList());
 
         return TurnoverReportVO.builder()
@@ -98,11 +85,9 @@ public class ReportServiceImpl implements ReportService {
         List<Integer> newUserList = new ArrayList<>();
         List<Integer> totalUserList = new ArrayList<>();
 
-        for (LocalDate date : dateList) {
-            LocalDateTime dayStart = date.atTime(LocalTime.MIN);
-            LocalDateTime dayEnd = date.atTime(LocalTime.MAX);
-            // 查询当天新增用户数
-            int newUsers = userMapper.countNewUsers(dayStart, dayEnd);
+        for (DailyBusinessStats day : reportDataSource.getDailyStats(startDate, endDate)) {
+            // 当天新增用户数
+            int newUsers = day.getNewUsers();
             newUserList.add(newUsers);
 
             // 计算当天累计用户数：初始用户数 + 累加每天新增的用户
@@ -134,12 +119,9 @@ public class ReportServiceImpl implements ReportService {
         Integer totalOrderCount = 0;
         Integer totalValidOrderCount = 0;
 
-        for (LocalDate date : dateList) {
-            LocalDateTime start = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime end = LocalDateTime.of(date, LocalTime.MAX);
-
-            Integer orderCount = orderMapper.countByDateAndStatus(start, end, null);
-            Integer validOrderCount = orderMapper.countByDateAndStatus(start, end, Orders.COMPLETED);
+        for (DailyBusinessStats day : reportDataSource.getDailyStats(startDate, endDate)) {
+            Integer orderCount = day.getTotalOrders();
+            Integer validOrderCount = day.getCompletedOrders();
 
             orderCountList.add(orderCount);
             validOrderCountList.add(validOrderCount);
@@ -169,10 +151,7 @@ public class ReportServiceImpl implements ReportService {
      */
     public SalesTop10ReportVO getSalesTop10(LocalDate startDate, LocalDate endDate) {
 
-        LocalDateTime start = LocalDateTime.of(startDate, LocalTime.MIN);
-        LocalDateTime end = LocalDateTime.of(endDate, LocalTime.MAX);
-
-        List<GoodsSalesDTO> salesTop = orderMapper.getSalesTop(start, end);
+        List<GoodsSalesDTO> salesTop = salesRanking.top(startDate, endDate, 10);
         List<String> names = salesTop.stream().map(GoodsSalesDTO::getName).collect(Collectors.toList());
         List<Integer> numbers = salesTop.stream().map(GoodsSalesDTO::getNumber).collect(Collectors.toList());
 
@@ -185,51 +164,76 @@ public class ReportServiceImpl implements ReportService {
     /**
      * 导出运营数据报表
      *
+     * @param startDate
+     * @param endDate
      * @param response
      */
-    public void exportBusinessData(HttpServletResponse response) {
-
-        LocalDate dateBegin = LocalDate.now().minusDays(30);
-        LocalDate dateEnd = LocalDate.now().minusDays(1);
+    public void exportBusinessData(LocalDate startDate, LocalDate endDate, HttpServletResponse response) {
 
-        BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(dateBegin, LocalTime.MIN), LocalDateTime.of(dateEnd, LocalTime.MAX));
+        if (startDate == null || endDate == null) {
+            startDate = LocalDate.now().minusDays(30);
+            endDate = LocalDate.now().minusDays(1);
+        }
+        checkExportRange(startDate, endDate);
 
-        InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
         try {
-            XSSFWorkbook excel = new XSSFWorkbook(inputStream);
-
-            XSSFSheet sheet = excel.getSheet("Sheet1");
-            sheet.getRow(1).getCell(1).setCellValue(dateBegin + " 至 " + dateEnd);
+            ServletOutputStream outputStream = response.getOutputStream();
+            businessDataExporter.export(startDate, endDate, outputStream);
+            outputStream.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
 
-            sheet.getRow(3).getCell(2).setCellValue(businessData.getTurnover());
-            sheet.getRow(3).getCell(4).setCellValue(businessData.getOrderCompletionRate());
-            sheet.getRow(3).getCell(6).setCellValue(businessData.getNewUsers());
+    }
 
-            sheet.getRow(4).getCell(2).setCellValue(businessData.getValidOrderCount());
-            sheet.getRow(4).getCell(4).setCellValue(businessData.getUnitPrice());
+    /**
+     * 提交运营数据报表异步导出任务
+     *
+     * @param startDate
+     * @param endDate
+     * @param format
+     * @return
+     */
+    public ExportJobVO submitExportJob(LocalDate startDate, LocalDate endDate, String format) {
 
-            for(int i = 0; i < 30; i++){
-                LocalDate date = dateBegin.plusDays(i);
-                BusinessDataVO data = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
+        if (startDate == null || endDate == null) {
+            startDate = LocalDate.now().minusDays(30);
+            endDate = LocalDate.now().minusDays(1);
+        }
+        checkExportRange(startDate, endDate);
 
-                XSSFRow row = sheet.getRow(i + 7);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(data.getTurnover());
-                row.getCell(3).setCellValue(data.getValidOrderCount());
-                row.getCell(4).setCellValue(data.getOrderCompletionRate());
-                row.getCell(5).setCellValue(data.getUnitPrice());
-                row.getCell(6).setCellValue(data.getNewUsers());
-            }
+        return reportExportJobs.submit(startDate, endDate, StringUtils.isBlank(format) ? ReportExportJobs.XLSX : format);
+    }
 
-            ServletOutputStream outputStream = response.getOutputStream();
-            excel.write(outputStream);
+    /**
+     * 查询导出任务的状态和进度
+     *
+     * @param id
+     * @return
+     */
+    public ExportJobVO getExportJob(String id) {
+        return reportExportJobs.get(id);
+    }
 
-            outputStream.close();
-            excel.close();
+    /**
+     * 下载导出任务生成的文件
+     *
+     * @param id
+     * @param request
+     * @param response
+     */
+    public void downloadExportJob(String id, HttpServletRequest request, HttpServletResponse response) {
+        try {
+            reportExportJobs.download(id, request, response);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
 
+    private void checkExportRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate) || ChronoUnit.DAYS.between(startDate, endDate) >= BusinessDataExporter.MAX_DAYS) {
+            throw new ReportBusinessException(MessageConstant.REPORT_RANGE_INVALID);
+        }
     }
 
 
@@ -1,7 +1,6 @@
 package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
-import com.github.pagehelper.PageHelper;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -14,6 +13,8 @@ import com.sky.exception.SetmealEnableFailedException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.order.OrderPricingEngine;
+import com.sky.page.PageCountCache;
 import com.sky.result.PageResult;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
@@ -40,6 +41,12 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private DishMapper dishMapper;
 
+    @Autowired
+    private OrderPricingEngine orderPricingEngine;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
     /**
      * 新增套餐
      * @param setmealDTO
@@ -61,6 +68,8 @@ public class SetmealServiceImpl implements SetmealService {
         });
 
         setmealDishMapper.insertBatch(setmealDishes);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -71,9 +80,9 @@ public class SetmealServiceImpl implements SetmealService {
      */
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
 
-        PageHelper.startPage(setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
-
-        Page<SetmealVO> page = setmealMapper.pageQuery(setmealPageQueryDTO);
+        Page<SetmealVO> page = pageCountCache.query("setmeal", setmealPageQueryDTO,
+                setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize(),
+                () -> setmealMapper.pageQuery(setmealPageQueryDTO));
 
         return new PageResult(page.getTotal(), page.getResult());
     }
@@ -94,6 +103,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         setmealMapper.deleteByIds(ids);
         setmealDishMapper.deleteBySetmealIds(ids);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -132,6 +143,8 @@ public class SetmealServiceImpl implements SetmealService {
         });
 
         setmealDishMapper.insertBatch(setmealDishes);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
@@ -160,6 +173,8 @@ public class SetmealServiceImpl implements SetmealService {
                 .build();
 
         setmealMapper.update(setmeal);
+
+        orderPricingEngine.invalidate();
     }
 
     /**
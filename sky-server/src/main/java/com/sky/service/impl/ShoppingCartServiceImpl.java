@@ -1,5 +1,6 @@
 package com.sky.service.impl;
 
+import com.sky.cart.CartStore;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
@@ -7,7 +8,6 @@ import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -22,7 +22,7 @@ import java.util.List;
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
 
     @Autowired
     private DishMapper dishMapper;
@@ -42,16 +42,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         shoppingCart.setUserId(BaseContext.getCurrentId());
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        // 若存在，将数量加一
-        if(list != null && !list.isEmpty()) {
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        }
-        // 不存在，插入一条新的购物车数据
-        else {
+        // 若存在，将数量加一；不存在，插入一条新的购物车数据
+        if(!cartStore.increment(shoppingCart)) {
             // 判断本次添加到购物车的是菜品还是套餐
             Long dishId = shoppingCartDTO.getDishId();
             if(dishId != null) {
@@ -70,7 +62,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
             shoppingCart.setNumber(1);
             shoppingCart.setCreateTime(LocalDateTime.now());
 
-            shoppingCartMapper.insert(shoppingCart);
+            cartStore.insert(shoppingCart);
         }
     }
 
@@ -82,10 +74,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public List<ShoppingCart> showShoppingCart() {
 
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                                                .userId(userId)
-                                                .build();
-        return shoppingCartMapper.list(shoppingCart);
+        return cartStore.list(userId);
     }
 
     /**
@@ -94,7 +83,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public void cleanShoppingCart() {
 
         Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        cartStore.clear(userId);
     }
 
     /**
@@ -107,16 +96,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         shoppingCart.setUserId(BaseContext.getCurrentId());
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
 
-        if(list != null && !list.isEmpty()) {
-            shoppingCart = list.get(0);
-            if(shoppingCart.getNumber() == 1) {
-                shoppingCartMapper.deleteById(shoppingCart.getId());
-            } else {
-                shoppingCart.setNumber(shoppingCart.getNumber() - 1);
-                shoppingCartMapper.updateNumberById(shoppingCart);
-            }
-        }
+        cartStore.decrement(shoppingCart);
     }
 }
@@ -6,6 +6,9 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.order.OrderStatusCounters;
+import com.sky.report.DailyStats;
+import com.sky.report.ReportDataSource;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -31,6 +34,10 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private OrderStatusCounters orderStatusCounters;
+    @Autowired
+    private ReportDataSource reportDataSource;
 
     /**
      * 根据时间段统计营业数据
@@ -47,6 +54,12 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
+        // 整天的范围直接读取每日营业数据
+        if (begin.toLocalTime().equals(LocalTime.MIN) && end.toLocalTime().equals(LocalTime.MAX)) {
+            return DailyStats.toBusinessData(
+                    DailyStats.sum(reportDataSource.getDailyStats(begin.toLocalDate(), end.toLocalDate())));
+        }
+
         Map map = new HashMap();
         map.put("begin",begin);
         map.put("end",end);
@@ -91,31 +104,22 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
-        Map map = new HashMap();
-        map.put("begin", LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status", Orders.TO_BE_CONFIRMED);
-
-        LocalDateTime begin = LocalDateTime.now().with(LocalTime.MIN);
-        LocalDateTime end = LocalDateTime.now().with(LocalTime.MAX);
+        //今日订单按状态的计数由OrderStatusCounters在内存中维护
 
         //待接单
-        Integer waitingOrders = orderMapper.countByDateAndStatus(begin, end, Orders.TO_BE_CONFIRMED);
+        Integer waitingOrders = orderStatusCounters.countToday(Orders.TO_BE_CONFIRMED);
 
         //待派送
-        map.put("status", Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.countByDateAndStatus(begin, end, Orders.CONFIRMED);
+        Integer deliveredOrders = orderStatusCounters.countToday(Orders.CONFIRMED);
 
         //已完成
-        map.put("status", Orders.COMPLETED);
-        Integer completedOrders = orderMapper.countByDateAndStatus(begin, end, Orders.COMPLETED);
+        Integer completedOrders = orderStatusCounters.countToday(Orders.COMPLETED);
 
         //已取消
-        map.put("status", Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.countByDateAndStatus(begin, end, Orders.CANCELLED);
+        Integer cancelledOrders = orderStatusCounters.countToday(Orders.CANCELLED);
 
         //全部订单
-        map.put("status", null);
-        Integer allOrders = orderMapper.countByDateAndStatus(begin, end, null);
+        Integer allOrders = orderStatusCounters.countToday(null);
 
         return OrderOverViewVO.builder()
                 .waitingOrders(waitingOrders)
@@ -0,0 +1,71 @@
+package com.sky.task;
+
+import com.sky.cart.CartStore;
+import com.sky.cart.RedisCartStore;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 定时任务类，将redis购物车异步回写到shopping_cart表
+ */
+@Component
+@ConditionalOnExpression("'${sky.cart.storage:mysql}' == 'redis' && ${sky.cart.write-behind:false}")
+@Slf4j
+public class CartWriteBehindTask {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @Autowired
+    private CartProperties cartProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 回写发生变化的用户购物车
+     */
+    @Scheduled(fixedDelayString = "${sky.cart.write-behind-interval:5000}")
+    public void writeBehind() {
+
+        List<String> userIds = stringRedisTemplate.opsForSet()
+                .pop(RedisCartStore.DIRTY_KEY, cartProperties.getWriteBehindBatchSize());
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+
+        log.debug("回写购物车，用户数: {}", userIds.size());
+
+        for (String id : userIds) {
+            Long userId = Long.valueOf(id);
+            try {
+                List<ShoppingCart> list = cartStore.list(userId);
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingCartMapper.deleteByUserId(userId);
+                    if (!list.isEmpty()) {
+                        shoppingCartMapper.insertBatch(list);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.error("回写购物车失败，用户: {}", userId, e);
+                stringRedisTemplate.opsForSet().add(RedisCartStore.DIRTY_KEY, id);
+            }
+        }
+    }
+}
@@ -1,43 +1,28 @@
 package com.sky.task;
 
 import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderArchiver;
+import com.sky.order.OrderBulkTransition;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 /**
  * 定时任务类，定时处理订单状态
+ * 超时未付款订单的自动取消由 OrderTimeoutScheduler 按订单到期时间处理
  */
 @Component
 @Slf4j
 public class OrderTask {
 
     @Autowired
-    private OrderMapper orderMapper;
+    private OrderBulkTransition orderBulkTransition;
 
-    /**
-     * 处理超时未付款订单
-     */
-    @Scheduled(cron = "0 * * * * ?")
-    public void processTimeoutOrder() {
-
-        log.info("定时处理超时订单: {}", LocalDateTime.now());
-
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().plusMinutes(-15));
-        if (ordersList != null && !ordersList.isEmpty()) {
-            for (Orders order : ordersList) {
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("订单超时未付款，自动取消");
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-            }
-        }
-    }
+    @Autowired
+    private OrderArchiver orderArchiver;
 
     /**
      * 处理一直处于派送中的订单
@@ -47,13 +32,17 @@ public class OrderTask {
 
         log.info("定时处理一直处于派送中的订单: {}", LocalDateTime.now());
 
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusHours(-1));
-        if (ordersList != null && !ordersList.isEmpty()) {
-            for (Orders order : ordersList) {
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
-            }
-        }
+        orderBulkTransition.transition(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, LocalDateTime.now().plusHours(-1));
+    }
+
+    /**
+     * 归档已结束的历史订单，未开启归档时不做任何处理
+     */
+    @Scheduled(cron = "${sky.order.archive.cron:0 0 4 * * ?}")
+    public void processArchiveOrder() {
+
+        log.info("定时归档已结束的历史订单: {}", LocalDateTime.now());
 
+        orderArchiver.archive();
     }
 }
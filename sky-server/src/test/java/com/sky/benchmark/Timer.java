@@ -0,0 +1,71 @@
+package com.sky.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 基准测试计时：先预热，再取多次执行的平均耗时
+ */
+@Slf4j
+public final class Timer {
+
+    private static final int WARMUP = 5;
+
+    private static final int ITERATIONS = 20;
+
+    private Timer() {
+    }
+
+    /**
+     * 平均每次执行的耗时（毫秒）
+     *
+     * @param action
+     * @return
+     */
+    public static double averageMillis(Runnable action) {
+        return averageMillis(WARMUP, ITERATIONS, action);
+    }
+
+    /**
+     * 平均每次执行的耗时（毫秒）
+     *
+     * @param warmup 预热次数，不计时
+     * @param iterations 计时的执行次数
+     * @param action
+     * @return
+     */
+    public static double averageMillis(int warmup, int iterations, Runnable action) {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    /**
+     * 对比两种实现的耗时：先断言两者结果一致，再分别计时并输出平均耗时
+     *
+     * @param title 输出的标题
+     * @param baselineName 原实现的名称
+     * @param baseline 原实现
+     * @param candidateName 新实现的名称
+     * @param candidate 新实现
+     * @param result 从执行结果中取出需要一致的部分，如合计值
+     */
+    public static <T> void compare(String title, String baselineName, Supplier<T> baseline,
+                                   String candidateName, Supplier<T> candidate, Function<? super T, ?> result) {
+        assertEquals(result.apply(baseline.get()), result.apply(candidate.get()), title);
+
+        double baselineMillis = averageMillis(baseline::get);
+        double candidateMillis = averageMillis(candidate::get);
+        log.info("{}：{} {} ms，{} {} ms", title, baselineName, String.format("%.2f", baselineMillis),
+                candidateName, String.format("%.2f", candidateMillis));
+    }
+}
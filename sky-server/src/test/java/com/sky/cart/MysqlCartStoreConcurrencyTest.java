@@ -0,0 +1,147 @@
+package com.sky.cart;
+
+import com.sky.entity.Dish;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.DishMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 购物车并发加减数量与批量加入，需要连接数据库：mvn test -Dintegration=true
+ */
+@SpringBootTest(properties = "sky.cart.storage=mysql")
+@EnabledIfSystemProperty(named = "integration", matches = "true")
+public class MysqlCartStoreConcurrencyTest {
+
+    private static final Long USER_ID = 990000001L;
+
+    private static final int THREADS = 16;
+
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    private Long dishId;
+
+    @BeforeEach
+    public void setUp() {
+        List<Dish> dishes = dishMapper.list(new Dish());
+        assertFalse(dishes.isEmpty(), "需要至少一个菜品");
+        dishId = dishes.get(0).getId();
+        cartStore.clear(USER_ID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cartStore.clear(USER_ID);
+    }
+
+    /**
+     * 数量在1附近反复加减时，每次加购和减购都不丢失：结束时数量与开始时相同
+     */
+    @Test
+    public void testIncrementAndDecrementAroundOne() throws Exception {
+        assertTrue(cartStore.increment(item()));
+
+        run(() -> {
+            cartStore.increment(item());
+            cartStore.decrement(item());
+        });
+
+        assertEquals(1, number());
+    }
+
+    /**
+     * 并发减到0时删除该商品，不会出现负数或残留的0数量行
+     */
+    @Test
+    public void testConcurrentDecrementToZero() throws Exception {
+        for (int i = 0; i < THREADS * ROUNDS; i++) {
+            cartStore.increment(item());
+        }
+
+        run(() -> cartStore.decrement(item()));
+
+        assertTrue(cartStore.list(USER_ID).isEmpty());
+    }
+
+    /**
+     * 再来一单时购物车已有的商品、订单中重复的商品都累加数量
+     */
+    @Test
+    public void testInsertBatchMergesExistingItems() {
+        assertTrue(cartStore.increment(item()));
+
+        cartStore.insertBatch(Arrays.asList(detail(2), detail(3)));
+
+        assertEquals(6, number());
+    }
+
+    private void run(Runnable action) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < ROUNDS; j++) {
+                        action.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ShoppingCart item() {
+        return ShoppingCart.builder()
+                .userId(USER_ID)
+                .dishId(dishId)
+                .build();
+    }
+
+    private ShoppingCart detail(int number) {
+        ShoppingCart shoppingCart = item();
+        shoppingCart.setName("测试菜品");
+        shoppingCart.setNumber(number);
+        shoppingCart.setAmount(BigDecimal.ONE);
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        return shoppingCart;
+    }
+
+    private int number() {
+        List<ShoppingCart> list = cartStore.list(USER_ID);
+        assertEquals(1, list.size());
+        return list.get(0).getNumber();
+    }
+}
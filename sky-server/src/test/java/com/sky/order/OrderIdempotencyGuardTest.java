@@ -0,0 +1,175 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPaymentDTO;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.OrderProperties;
+import com.sky.vo.OrderSubmitVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OrderIdempotencyGuardTest {
+
+    /**
+     * 多个实例共用的redis
+     */
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        BaseContext.setCurrentId(1L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    /**
+     * 同一令牌、相同参数的重试直接返回首次的结果
+     */
+    @Test
+    public void testReplayReturnsStoredResult() {
+        OrderIdempotencyGuard guard = guard(false);
+        OrderSubmitVO first = guard.execute("submit", "k1", payment("1"), OrderSubmitVO.class, this::submit);
+        OrderSubmitVO second = guard.execute("submit", "k1", payment("1"), OrderSubmitVO.class, this::submit);
+
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * 同一令牌携带不同的参数时拒绝执行
+     */
+    @Test
+    public void testKeyReusedWithDifferentRequest() {
+        OrderIdempotencyGuard guard = guard(false);
+        guard.execute("submit", "k1", payment("1"), OrderSubmitVO.class, this::submit);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> guard.execute("submit", "k1", payment("2"), OrderSubmitVO.class, this::submit));
+        assertEquals(MessageConstant.IDEMPOTENCY_KEY_REUSED, e.getMessage());
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * 并发到达的重复请求等待首个请求的结果，只执行一次
+     */
+    @Test
+    public void testConcurrentDuplicatesExecuteOnce() throws Exception {
+        OrderIdempotencyGuard guard = guard(false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OrderSubmitVO> first = executor.submit(() -> {
+                BaseContext.setCurrentId(1L);
+                return guard.execute("submit", "k1", payment("1"), OrderSubmitVO.class, () -> {
+                    running.countDown();
+                    release.await();
+                    return submit();
+                });
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<OrderSubmitVO> second = executor.submit(() -> {
+                BaseContext.setCurrentId(1L);
+                return guard.execute("submit", "k1", payment("1"), OrderSubmitVO.class, this::submit);
+            });
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 结果为null时替换redis中执行中的占位值，其他实例的重试直接返回null，不再等待或重复执行
+     */
+    @Test
+    public void testNullResultReplacesPlaceholder() {
+        OrderIdempotencyGuard guard = guard(true);
+        assertNull(guard.execute("payment", "k1", payment("1"), Object.class, () -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        String stored = redis.values().iterator().next();
+        assertTrue(stored.contains("\"result\""), stored);
+
+        OrderIdempotencyGuard other = guard(true);
+        long start = System.currentTimeMillis();
+        assertNull(other.execute("payment", "k1", payment("1"), Object.class, () -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, calls.get());
+
+        assertThrows(OrderBusinessException.class,
+                () -> other.execute("payment", "k1", payment("2"), Object.class, () -> null));
+    }
+
+    private OrderSubmitVO submit() {
+        calls.incrementAndGet();
+        return OrderSubmitVO.builder().id((long) calls.get()).build();
+    }
+
+    private static OrdersPaymentDTO payment(String orderNumber) {
+        OrdersPaymentDTO ordersPaymentDTO = new OrdersPaymentDTO();
+        ordersPaymentDTO.setOrderNumber(orderNumber);
+        ordersPaymentDTO.setPayMethod(1);
+        return ordersPaymentDTO;
+    }
+
+    private OrderIdempotencyGuard guard(boolean redisEnabled) {
+        OrderProperties properties = new OrderProperties();
+        properties.getIdempotency().setRedisEnabled(redisEnabled);
+
+        @SuppressWarnings("unchecked")
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenAnswer(invocation ->
+                redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), anyLong(), any());
+        when(valueOperations.get(any())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.delete(anyString())).thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)) != null);
+
+        OrderIdempotencyGuard guard = new OrderIdempotencyGuard();
+        ReflectionTestUtils.setField(guard, "orderProperties", properties);
+        ReflectionTestUtils.setField(guard, "stringRedisTemplate", stringRedisTemplate);
+        guard.init();
+        return guard;
+    }
+}
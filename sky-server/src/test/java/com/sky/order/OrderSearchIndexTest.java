@@ -0,0 +1,64 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 搜索索引只缩小扫描范围，不改变搜索结果
+ */
+public class OrderSearchIndexTest {
+
+    private final LocalDateTime since = LocalDate.now().minusDays(90).atStartOfDay();
+
+    private OrderSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setUp() {
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        when(orderMapper.getSearchFields(any(), anyLong(), anyInt())).thenReturn(Collections.singletonList(
+                Orders.builder().id(1L).number("1700000000001").phone("13800001234").orderTime(LocalDateTime.now()).build()));
+
+        searchIndex = new OrderSearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(searchIndex, "orderProperties", new OrderProperties());
+        searchIndex.init();
+    }
+
+    /**
+     * 未指定开始时间时，索引范围之前的订单仍按原条件扫描
+     */
+    @Test
+    public void testNoBeginTimeScansOlderOrders() {
+        OrderSearchFilter filter = searchIndex.filter(null, "1380", null);
+        assertNotNull(filter);
+        assertEquals(Collections.singletonList(1L), filter.getIds());
+        assertEquals(since, filter.getUncoveredBefore());
+    }
+
+    /**
+     * 开始时间早于索引范围时扫描更早的订单，落在索引范围内时只查询候选订单
+     */
+    @Test
+    public void testBeginTimeInsideIndexSkipsScan() {
+        assertEquals(since, searchIndex.filter(null, "1380", since.minusDays(1)).getUncoveredBefore());
+        assertNull(searchIndex.filter(null, "1380", since).getUncoveredBefore());
+        assertNull(searchIndex.filter(null, "1380", LocalDateTime.now().minusDays(1)).getUncoveredBefore());
+    }
+}
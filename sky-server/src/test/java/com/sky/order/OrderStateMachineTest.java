@@ -0,0 +1,108 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 订单状态流转只执行条件更新，成功后以流转前的状态通知监听者
+ */
+public class OrderStateMachineTest {
+
+    private OrderMapper orderMapper;
+
+    private OrderEvents orderEvents;
+
+    private OrderStateMachine stateMachine;
+
+    @BeforeEach
+    public void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        orderEvents = mock(OrderEvents.class);
+
+        stateMachine = new OrderStateMachine();
+        ReflectionTestUtils.setField(stateMachine, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(stateMachine, "orderEvents", orderEvents);
+    }
+
+    /**
+     * 只有一个原状态时不再读取，直接以该状态通知
+     */
+    @Test
+    public void testSingleSource() {
+        when(orderMapper.transition(any(), any(), anyBoolean(), anyBoolean())).thenReturn(1);
+
+        assertTrue(stateMachine.tryFire(1L, OrderStateMachine.Transition.CONFIRM, null));
+
+        verify(orderMapper).transition(any(), eq(Collections.singletonList(Orders.TO_BE_CONFIRMED)), eq(false), eq(false));
+        verify(orderMapper, never()).getTransitionSource();
+        verify(orderEvents).transitioned(1L, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED);
+    }
+
+    /**
+     * 有多个原状态时由同一条更新记录流转前的状态
+     */
+    @Test
+    public void testMultiSourceRecordsSource() {
+        when(orderMapper.transition(any(), any(), anyBoolean(), anyBoolean())).thenReturn(1);
+        when(orderMapper.getTransitionSource()).thenReturn(Orders.CONFIRMED);
+
+        assertTrue(stateMachine.tryFire(1L, OrderStateMachine.Transition.CANCEL, null));
+
+        verify(orderMapper).transition(any(), eq(Arrays.asList(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED,
+                Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS)), eq(true), eq(true));
+        verify(orderEvents).transitioned(1L, Orders.CONFIRMED, Orders.CANCELLED);
+    }
+
+    /**
+     * 状态不允许时不读取原状态，也不通知
+     */
+    @Test
+    public void testRejectedTransition() {
+        when(orderMapper.transition(any(), any(), anyBoolean(), anyBoolean())).thenReturn(0);
+
+        assertFalse(stateMachine.tryFire(1L, OrderStateMachine.Transition.USER_CANCEL, null));
+
+        verify(orderMapper, never()).getTransitionSource();
+        verify(orderMapper, never()).getById(anyLong());
+        verifyNoInteractions(orderEvents);
+    }
+
+    /**
+     * 流转失败时区分订单不存在和状态错误
+     */
+    @Test
+    public void testFireFailure() {
+        when(orderMapper.transition(any(), any(), anyBoolean(), anyBoolean())).thenReturn(0);
+        when(orderMapper.getById(2L)).thenReturn(Orders.builder().id(2L).status(Orders.COMPLETED).build());
+
+        OrderBusinessException missing = assertThrows(OrderBusinessException.class,
+                () -> stateMachine.fire(1L, OrderStateMachine.Transition.CONFIRM, null));
+        assertEquals(MessageConstant.ORDER_NOT_FOUND, missing.getMessage());
+
+        OrderBusinessException status = assertThrows(OrderBusinessException.class,
+                () -> stateMachine.fire(2L, OrderStateMachine.Transition.CONFIRM, null));
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, status.getMessage());
+    }
+}
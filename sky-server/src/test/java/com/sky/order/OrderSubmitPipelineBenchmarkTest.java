@@ -0,0 +1,142 @@
+package com.sky.order;
+
+import com.sky.cart.CartStore;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.utils.OrderNumberGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 下单写库：每单一个事务与批量提交管道的吞吐量对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest(properties = "sky.order.submit.batch-enabled=true")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class OrderSubmitPipelineBenchmarkTest {
+
+    /**
+     * 压测订单的用户id，压测结束后删除该用户的订单
+     */
+    private static final long USER_ID = 990000002L;
+
+    private static final int ORDERS_PER_THREAD = 200;
+
+    @Autowired
+    private OrderSubmitPipeline orderSubmitPipeline;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from order_detail where order_id in (select id from orders where user_id = ?)", USER_ID);
+        jdbcTemplate.update("delete from orders where user_id = ?", USER_ID);
+    }
+
+    @Test
+    public void benchmarkSubmit() throws Exception {
+        for (int threads : new int[]{1, 8, 32}) {
+            double single = throughput(threads, (orders, details) -> transactionTemplate.executeWithoutResult(status -> {
+                orderMapper.insert(orders);
+                details.forEach(detail -> detail.setOrderId(orders.getId()));
+                orderDetailMapper.insertBatch(details);
+                cartStore.clear(orders.getUserId());
+            }));
+            double batch = throughput(threads, (orders, details) ->
+                    assertTrue(orderSubmitPipeline.submit(orders, details), "批量提交队列已满"));
+            log.info("下单写库 {} 线程：每单一个事务 {} 单/秒，批量提交 {} 单/秒", threads,
+                    String.format("%.0f", single), String.format("%.0f", batch));
+        }
+    }
+
+    /**
+     * 多个线程同时下单，返回每秒写入的订单数
+     */
+    private double throughput(int threads, BiConsumer<Orders, List<OrderDetail>> submit) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < ORDERS_PER_THREAD; j++) {
+                        Orders orders = newOrder();
+                        List<OrderDetail> details = Collections.singletonList(OrderDetail.builder()
+                                .name("压测菜品")
+                                .dishId(1L)
+                                .number(1)
+                                .amount(new BigDecimal("20"))
+                                .build());
+                        submit.accept(orders, details);
+                        assertEquals(orders.getId(), details.get(0).getOrderId());
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            return threads * ORDERS_PER_THREAD / ((System.nanoTime() - begin) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Orders newOrder() {
+        Orders orders = new Orders();
+        orders.setNumber(orderNumberGenerator.nextNumber());
+        orders.setStatus(Orders.PENDING_PAYMENT);
+        orders.setUserId(USER_ID);
+        orders.setAddressBookId(0L);
+        orders.setOrderTime(LocalDateTime.now());
+        orders.setPayMethod(1);
+        orders.setPayStatus(Orders.UN_PAID);
+        orders.setAmount(new BigDecimal("21"));
+        orders.setPackAmount(1);
+        orders.setTablewareNumber(1);
+        orders.setTablewareStatus(0);
+        return orders;
+    }
+}
@@ -0,0 +1,127 @@
+package com.sky.order;
+
+import com.sky.cart.CartStore;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class OrderSubmitPipelineTest {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * 当前是否处于事务中
+     */
+    private volatile boolean inTransaction;
+
+    /**
+     * 清空购物车的用户id，以及清空时是否处于事务中
+     */
+    private final List<Long> clearedUserIds = new CopyOnWriteArrayList<>();
+
+    private final List<Boolean> clearedInTransaction = new CopyOnWriteArrayList<>();
+
+    private OrderSubmitPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() {
+        OrderProperties properties = new OrderProperties();
+        properties.getSubmit().setBatchEnabled(true);
+
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        doAnswer(invocation -> {
+            List<Orders> ordersList = invocation.getArgument(0);
+            ordersList.forEach(orders -> orders.setId(ids.incrementAndGet()));
+            return null;
+        }).when(orderMapper).insertBatch(anyList());
+        CartStore cartStore = mock(CartStore.class);
+        doAnswer(invocation -> {
+            List<Long> userIds = invocation.getArgument(0);
+            for (Long userId : userIds) {
+                clearedUserIds.add(userId);
+                clearedInTransaction.add(inTransaction);
+            }
+            return null;
+        }).when(cartStore).clearBatch(anyList());
+        PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                inTransaction = true;
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                inTransaction = false;
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                inTransaction = false;
+            }
+        };
+
+        pipeline = new OrderSubmitPipeline();
+        ReflectionTestUtils.setField(pipeline, "orderProperties", properties);
+        ReflectionTestUtils.setField(pipeline, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(pipeline, "orderDetailMapper", mock(OrderDetailMapper.class));
+        ReflectionTestUtils.setField(pipeline, "cartStore", cartStore);
+        ReflectionTestUtils.setField(pipeline, "transactionTemplate", new TransactionTemplate(transactionManager));
+        pipeline.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    /**
+     * 下单用户的购物车在写入订单的同一事务中清空
+     */
+    @Test
+    public void testCartClearedInBatchTransaction() throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        List<Orders> submitted = new CopyOnWriteArrayList<>();
+        for (long userId : new long[]{1L, 2L, 2L}) {
+            threads.add(new Thread(() -> {
+                Orders orders = Orders.builder().userId(userId).build();
+                assertTrue(pipeline.submit(orders, Collections.singletonList(new OrderDetail())));
+                submitted.add(orders);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(3, submitted.size());
+        submitted.forEach(orders -> assertNotNull(orders.getId()));
+        assertTrue(clearedUserIds.containsAll(Arrays.asList(1L, 2L)));
+        assertTrue(clearedInTransaction.stream().allMatch(Boolean::booleanValue));
+    }
+}
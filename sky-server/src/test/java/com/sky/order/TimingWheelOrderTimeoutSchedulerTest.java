@@ -0,0 +1,81 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.properties.OrderProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 时间轮订单超时调度：启动时重建、到期取消与移除
+ */
+public class TimingWheelOrderTimeoutSchedulerTest {
+
+    private OrderTimeoutCanceller orderTimeoutCanceller;
+
+    private TimingWheelOrderTimeoutScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        OrderProperties orderProperties = new OrderProperties();
+        orderProperties.getTimeout().setTickMillis(10);
+        orderProperties.getTimeout().setWheelSize(8);
+
+        LocalDateTime now = LocalDateTime.now();
+        orderTimeoutCanceller = mock(OrderTimeoutCanceller.class);
+        // 重启期间已到期的订单和尚未到期的订单
+        when(orderTimeoutCanceller.listPending()).thenReturn(Arrays.asList(
+                Orders.builder().id(1L).orderTime(now.minusMinutes(20)).build(),
+                Orders.builder().id(2L).orderTime(now.minusMinutes(5)).build()
+        ));
+        when(orderTimeoutCanceller.deadline(any())).thenAnswer(invocation -> invocation.<LocalDateTime>getArgument(0)
+                .plusMinutes(15).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+
+        scheduler = new TimingWheelOrderTimeoutScheduler();
+        ReflectionTestUtils.setField(scheduler, "orderProperties", orderProperties);
+        ReflectionTestUtils.setField(scheduler, "orderTimeoutCanceller", orderTimeoutCanceller);
+        scheduler.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        scheduler.stop();
+    }
+
+    /**
+     * 启动时加载的待付款订单中已到期的立即取消，未到期的保留
+     */
+    @Test
+    public void testRebuildOnStart() {
+        verify(orderTimeoutCanceller, timeout(1000)).cancel(Collections.singletonList(1L));
+        verify(orderTimeoutCanceller, after(200).never()).cancel(Collections.singletonList(2L));
+    }
+
+    /**
+     * 到期前移除的订单不会被取消
+     */
+    @Test
+    public void testRemove() {
+        LocalDateTime orderTime = LocalDateTime.now().minusMinutes(15).plusNanos(100_000_000);
+        scheduler.register(3L, orderTime);
+        scheduler.register(4L, orderTime);
+        scheduler.remove(3L);
+
+        verify(orderTimeoutCanceller, timeout(1000)).cancel(Collections.singletonList(4L));
+        verify(orderTimeoutCanceller, after(200).never()).cancel(argThat(ids -> ids.contains(3L)));
+    }
+}
@@ -0,0 +1,87 @@
+package com.sky.page;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.mapper.TableStatsMapper;
+import com.sky.properties.PageProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PageCountCacheTest {
+
+    private final AtomicInteger approximateQueries = new AtomicInteger();
+
+    private PageCountCache pageCountCache;
+
+    @BeforeEach
+    public void setUp() {
+        PageProperties properties = new PageProperties();
+        properties.setApproximateCount(true);
+        TableStatsMapper tableStatsMapper = table -> {
+            approximateQueries.incrementAndGet();
+            return 42L;
+        };
+
+        pageCountCache = new PageCountCache();
+        ReflectionTestUtils.setField(pageCountCache, "pageProperties", properties);
+        ReflectionTestUtils.setField(pageCountCache, "tableVersions", new TableVersions());
+        ReflectionTestUtils.setField(pageCountCache, "tableStatsMapper", tableStatsMapper);
+        pageCountCache.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        PageHelper.clearPage();
+    }
+
+    /**
+     * 只有分页参数和withTotal的查询视为无条件，使用估算行数且估算值被缓存
+     */
+    @Test
+    public void testNonFilterFieldsIgnored() {
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setPage(2);
+        query.setPageSize(10);
+        query.setWithTotal(true);
+
+        assertEquals(42L, pageCountCache.query("orders", query, 2, 10, Page::new).getTotal());
+        query.setWithTotal(false);
+        query.setPage(3);
+        assertEquals(42L, pageCountCache.query("orders", query, 3, 10, Page::new).getTotal());
+        assertEquals(1, approximateQueries.get());
+    }
+
+    /**
+     * 有筛选条件时不使用估算行数，执行count查询
+     */
+    @Test
+    public void testFilterSkipsApproximateCount() {
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setStatus(5);
+
+        Page<Object> page = new Page<>();
+        page.setTotal(7);
+        assertEquals(7L, pageCountCache.query("orders", query, 1, 10, () -> page).getTotal());
+        assertEquals(0, approximateQueries.get());
+    }
+
+    /**
+     * 每页行数超出上限时按上限查询
+     */
+    @Test
+    public void testPageSizeLimited() {
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setStatus(5);
+
+        Page<Object> page = pageCountCache.query("orders", query, 1, Integer.MAX_VALUE,
+                () -> PageHelper.getLocalPage());
+        assertEquals(new PageProperties().getMaxPageSize(), page.getPageSize());
+    }
+}
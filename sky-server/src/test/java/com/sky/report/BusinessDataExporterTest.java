@@ -0,0 +1,39 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BusinessDataExporterTest {
+
+    /**
+     * csv中金额保留两位小数、订单完成率保留四位小数
+     */
+    @Test
+    public void testCsvDecimals() throws Exception {
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        List<DailyBusinessStats> days = Arrays.asList(
+                DailyBusinessStats.builder().statDate(day).turnover(10010).totalOrders(3).completedOrders(1).newUsers(2).build(),
+                DailyBusinessStats.builder().statDate(day.plusDays(1)).turnover(1).totalOrders(0).build());
+
+        BusinessDataExporter exporter = new BusinessDataExporter();
+        ReflectionTestUtils.setField(exporter, "reportDataSource", (ReportDataSource) (begin, end) -> days);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exporter.exportCsv(day, day.plusDays(1), outputStream, rows -> {
+        });
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(4, lines.length);
+        assertEquals("2024-03-01,100.10,1,0.3333,100.10,2", lines[1]);
+        assertEquals("2024-03-02,0.01,0,0.0000,0.00,0", lines[2]);
+        assertEquals("合计,100.11,1,0.3333,100.11,2", lines[3]);
+    }
+}
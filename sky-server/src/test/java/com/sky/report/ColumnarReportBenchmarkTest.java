@@ -0,0 +1,56 @@
+package com.sky.report;
+
+import com.sky.benchmark.Timer;
+import com.sky.dto.GoodsSalesDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 每日营业数据与菜品销量排名：查询订单表聚合与读取内存列式存储的耗时对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest(properties = {"sky.report.source=columnar", "sky.report.sales-ranking=columnar", "sky.report.day-cache-enabled=false"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ColumnarReportBenchmarkTest {
+
+    @Autowired
+    private ColumnarReportDataSource columnarReportDataSource;
+
+    @Autowired
+    private ColumnarSalesRanking columnarSalesRanking;
+
+    @Test
+    public void benchmarkDailyStats() {
+        LocalDate end = LocalDate.now();
+        for (int days : new int[]{7, 30, 366}) {
+            LocalDate begin = end.minusDays(days - 1);
+            Timer.compare("每日营业数据 " + days + " 天",
+                    "聚合订单表", () -> columnarReportDataSource.aggregate(begin, end),
+                    "读取列式存储", () -> columnarReportDataSource.getDailyStats(begin, end),
+                    DailyStats::sum);
+        }
+    }
+
+    @Test
+    public void benchmarkSalesTop() {
+        LocalDate end = LocalDate.now();
+        for (int days : new int[]{7, 30, 366}) {
+            LocalDate begin = end.minusDays(days - 1);
+            // 销量相同的菜品两种方式排序可能不同，比较全部菜品的销量
+            Timer.compare("菜品销量排名 " + days + " 天",
+                    "聚合订单明细", () -> columnarSalesRanking.query(begin, end, Integer.MAX_VALUE),
+                    "读取列式存储", () -> columnarSalesRanking.top(begin, end, Integer.MAX_VALUE),
+                    ColumnarReportBenchmarkTest::sales);
+        }
+    }
+
+    private static Map<String, Integer> sales(List<GoodsSalesDTO> top) {
+        return top.stream().collect(Collectors.toMap(GoodsSalesDTO::getName, GoodsSalesDTO::getNumber));
+    }
+}
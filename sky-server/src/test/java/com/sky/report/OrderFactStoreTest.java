@@ -0,0 +1,125 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 订单事实列式存储的压缩
+ */
+public class OrderFactStoreTest {
+
+    private final LocalDate today = LocalDate.now();
+
+    private OrderDetailMapper orderDetailMapper;
+
+    private OrderFactStore store;
+
+    @BeforeEach
+    public void setUp() {
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        when(orderMapper.getFactsSince(any(), any(), anyInt())).thenReturn(Arrays.asList(
+                orders(1L, today.minusDays(2), Orders.COMPLETED, "10"),
+                orders(2L, today.minusDays(1), Orders.TO_BE_CONFIRMED, "20"),
+                orders(3L, today, Orders.COMPLETED, "30")
+        ), Collections.emptyList());
+        orderDetailMapper = mock(OrderDetailMapper.class);
+        when(orderDetailMapper.getDishesByOrderIds(anyList(), anyBoolean())).thenReturn(Arrays.asList(
+                detail(1L, "宫保鸡丁", 1),
+                detail(3L, "鱼香肉丝", 2)
+        ));
+        ReportProperties reportProperties = new ReportProperties();
+        reportProperties.setColumnarDays(3);
+
+        store = new OrderFactStore();
+        ReflectionTestUtils.setField(store, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(store, "orderDetailMapper", orderDetailMapper);
+        ReflectionTestUtils.setField(store, "reportProperties", reportProperties);
+        store.load();
+    }
+
+    @Test
+    public void testCompactDropsExpiredOrders() {
+        assertEquals(today.minusDays(2), store.getSince());
+        assertEquals(Arrays.asList(1, 1, 1), totalOrders());
+
+        store.compact(today.plusDays(1));
+
+        assertEquals(today.minusDays(1), store.getSince());
+        assertEquals(Arrays.asList(0, 1, 1), totalOrders());
+        assertEquals(Collections.singletonMap("鱼香肉丝", 2), store.getDishSales(today.minusDays(2), today));
+
+        // 早于最早日期的新订单不再追加
+        store.onCreated(orders(4L, today.minusDays(2), Orders.COMPLETED, "40"));
+        assertEquals(Arrays.asList(0, 1, 1), totalOrders());
+    }
+
+    @Test
+    public void testTransitionAfterCompact() {
+        store.compact(today.plusDays(1));
+
+        when(orderDetailMapper.getByOrderId(2L)).thenReturn(Collections.singletonList(detail(2L, "宫保鸡丁", 3)));
+        store.onTransition(2L, Orders.TO_BE_CONFIRMED, Orders.COMPLETED);
+
+        List<DailyBusinessStats> stats = store.getDailyStats(today.minusDays(1), today);
+        assertEquals(2000, stats.get(0).getTurnover());
+        assertEquals(1, stats.get(0).getCompletedOrders());
+        assertEquals(3000, stats.get(1).getTurnover());
+        Map<String, Integer> sales = new HashMap<>();
+        sales.put("宫保鸡丁", 3);
+        sales.put("鱼香肉丝", 2);
+        assertEquals(sales, store.getDishSales(today.minusDays(1), today));
+    }
+
+    @Test
+    public void testCompactIsIdempotent() {
+        store.compact(today);
+        assertEquals(today.minusDays(2), store.getSince());
+        assertEquals(Arrays.asList(1, 1, 1), totalOrders());
+    }
+
+    private List<Integer> totalOrders() {
+        return Arrays.asList(store.getDailyStats(today.minusDays(2), today).stream()
+                .map(DailyBusinessStats::getTotalOrders)
+                .toArray(Integer[]::new));
+    }
+
+    private static Orders orders(Long id, LocalDate date, Integer status, String amount) {
+        return Orders.builder()
+                .id(id)
+                .orderTime(date.atTime(12, 0))
+                .status(status)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+
+    private static OrderDetail detail(Long orderId, String name, int number) {
+        return OrderDetail.builder()
+                .orderId(orderId)
+                .name(name)
+                .number(number)
+                .build();
+    }
+}
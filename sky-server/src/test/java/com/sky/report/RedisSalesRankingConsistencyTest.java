@@ -0,0 +1,44 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * redis有序集合的菜品销量排名与订单明细聚合的结果一致，需要连接数据库和redis：mvn test -Dintegration=true
+ */
+@SpringBootTest(properties = "sky.report.sales-ranking=redis")
+@EnabledIfSystemProperty(named = "integration", matches = "true")
+public class RedisSalesRankingConsistencyTest {
+
+    @Autowired
+    private RedisSalesRanking salesRanking;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Test
+    public void testTopMatchesSql() {
+        LocalDate today = LocalDate.now();
+        salesRanking.rebuild(today.minusDays(29), today);
+
+        for (int days : new int[]{1, 7, 30}) {
+            LocalDate begin = today.minusDays(days - 1);
+            for (int limit : new int[]{1, 3, 10}) {
+                List<GoodsSalesDTO> expected = orderMapper.getSalesTop(LocalDateTime.of(begin, LocalTime.MIN),
+                        LocalDateTime.of(today, LocalTime.MAX), limit);
+                assertEquals(expected, salesRanking.top(begin, today, limit), begin + " 至 " + today + "，前" + limit + "名");
+            }
+        }
+    }
+}
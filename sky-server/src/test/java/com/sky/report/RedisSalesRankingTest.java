@@ -0,0 +1,99 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * redis不可用时菜品销量排名的行为
+ */
+public class RedisSalesRankingTest {
+
+    private static final List<GoodsSalesDTO> SQL_TOP = Collections.singletonList(new GoodsSalesDTO("鱼香肉丝", 3));
+
+    private RedisSalesRanking salesRanking;
+
+    @BeforeEach
+    public void setUp() {
+        ReportProperties properties = new ReportProperties();
+        properties.setDayCacheEnabled(false);
+
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        when(orderMapper.getById(anyLong())).thenAnswer(invocation ->
+                Orders.builder().id(invocation.getArgument(0)).orderTime(LocalDateTime.now()).build());
+        when(orderMapper.getSalesTop(any(), any(), anyInt())).thenReturn(SQL_TOP);
+        OrderDetailMapper orderDetailMapper = mock(OrderDetailMapper.class);
+        when(orderDetailMapper.getByOrderId(anyLong())).thenAnswer(invocation ->
+                Collections.singletonList(OrderDetail.builder().orderId(invocation.getArgument(0)).name("鱼香肉丝").number(1).build()));
+        StringRedisTemplate redisUnavailable = mock(StringRedisTemplate.class);
+        when(redisUnavailable.opsForZSet()).thenThrow(new RedisConnectionFailureException("redis unavailable"));
+
+        salesRanking = new RedisSalesRanking();
+        ReflectionTestUtils.setField(salesRanking, "stringRedisTemplate", redisUnavailable);
+        ReflectionTestUtils.setField(salesRanking, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(salesRanking, "orderDetailMapper", orderDetailMapper);
+        ReflectionTestUtils.setField(salesRanking, "reportProperties", properties);
+        ReflectionTestUtils.setField(salesRanking, SqlSalesRanking.class, "orderMapper", orderMapper, null);
+        ReflectionTestUtils.setField(salesRanking, SqlSalesRanking.class, "reportProperties", properties, null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * 不在事务中时直接累加，redis失败不影响订单流转
+     */
+    @Test
+    public void testDirectFailureNotPropagated() {
+        salesRanking.onTransition(1L, Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED);
+    }
+
+    /**
+     * 事务提交后累加，redis失败不影响提交后的处理
+     */
+    @Test
+    public void testAfterCommitFailureNotPropagated() {
+        TransactionSynchronizationManager.initSynchronization();
+        salesRanking.onTransition(1L, Orders.COMPLETED, Orders.CANCELLED);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+
+    /**
+     * redis查询失败时改为聚合订单明细
+     */
+    @Test
+    public void testTopFallsBackToSql() {
+        LocalDate today = LocalDate.now();
+        assertEquals(SQL_TOP, salesRanking.top(today.minusDays(6), today, 10));
+    }
+}
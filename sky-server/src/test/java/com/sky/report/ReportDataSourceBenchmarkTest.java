@@ -0,0 +1,34 @@
+package com.sky.report;
+
+import com.sky.benchmark.Timer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+
+/**
+ * 每日营业数据：聚合订单表、用户表与读取汇总表的耗时对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest(properties = "sky.report.source=rollup")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ReportDataSourceBenchmarkTest {
+
+    @Autowired
+    private RollupReportDataSource rollupReportDataSource;
+
+    @Test
+    public void benchmarkDailyStats() {
+        LocalDate end = LocalDate.now();
+        for (int days : new int[]{7, 30, 366}) {
+            LocalDate begin = end.minusDays(days - 1);
+            // 汇总表的行带有更新时间，比较范围合计
+            rollupReportDataSource.flush();
+            Timer.compare("每日营业数据 " + days + " 天",
+                    "聚合订单表", () -> rollupReportDataSource.aggregate(begin, end),
+                    "读取汇总表", () -> rollupReportDataSource.getDailyStats(begin, end),
+                    DailyStats::sum);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sky.report;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStatusCounters;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReportDayCacheTest {
+
+    private final LocalDate yesterday = LocalDate.now().minusDays(1);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ReportDayCache reportDayCache;
+
+    private OrderMapper orderMapper;
+
+    @BeforeEach
+    public void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        OrderStatusCounters orderStatusCounters = mock(OrderStatusCounters.class);
+        when(orderStatusCounters.isToday(1L)).thenReturn(true);
+        reportDayCache = new ReportDayCache();
+        ReflectionTestUtils.setField(reportDayCache, "reportProperties", new ReportProperties());
+        ReflectionTestUtils.setField(reportDayCache, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(reportDayCache, "orderStatusCounters", orderStatusCounters);
+        reportDayCache.init();
+    }
+
+    /**
+     * 今天之前的日期查询一次后命中缓存
+     */
+    @Test
+    public void testPastDayCached() {
+        assertEquals(1, sales(() -> {
+        }));
+        assertEquals(1, sales(() -> {
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 查询期间日期被失效时，查询到的旧数据不放入缓存
+     */
+    @Test
+    public void testLoadDoesNotOverwriteInvalidation() {
+        sales(() -> reportDayCache.invalidateDates(Collections.singleton(yesterday)));
+        sales(() -> {
+        });
+        assertEquals(2, loads.get());
+
+        sales(() -> {
+        });
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 写入下单时间在今天之前的订单后重新查询该日期
+     */
+    @Test
+    public void testCreatedBeforeTodayInvalidates() {
+        sales(() -> {
+        });
+        reportDayCache.onCreated(Orders.builder().orderTime(yesterday.atTime(23, 59, 59)).build());
+        sales(() -> {
+        });
+        assertEquals(2, loads.get());
+
+        reportDayCache.onCreated(Orders.builder().orderTime(LocalDateTime.now()).build());
+        sales(() -> {
+        });
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 今日订单的流转不查询下单时间，其余订单按下单时间失效
+     */
+    @Test
+    public void testTransitionSkipsTodayOrders() {
+        when(orderMapper.getOrderTimeAndAmountByIds(Collections.singletonList(2L))).thenReturn(Collections.singletonList(
+                Orders.builder().id(2L).orderTime(yesterday.atTime(12, 0)).build()));
+        sales(() -> {
+        });
+
+        reportDayCache.onTransition(1L, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED);
+        verify(orderMapper, never()).getOrderTimeAndAmountByIds(anyList());
+        sales(() -> {
+        });
+        assertEquals(1, loads.get());
+
+        reportDayCache.onBulkTransition(Arrays.asList(1L, 2L), Orders.CONFIRMED, Orders.CANCELLED, 2);
+        verify(orderMapper).getOrderTimeAndAmountByIds(Collections.singletonList(2L));
+        sales(() -> {
+        });
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 查询昨天的菜品销量，返回本次查询时的查询次数
+     *
+     * @param duringLoad 在查询数据库期间执行
+     */
+    private int sales(Runnable duringLoad) {
+        Map<LocalDate, Map<String, Integer>> days = reportDayCache.getDishSales(yesterday, yesterday, (from, to) -> {
+            int load = loads.incrementAndGet();
+            duringLoad.run();
+            Map<LocalDate, Map<String, Integer>> loaded = new HashMap<>();
+            loaded.put(yesterday, Collections.singletonMap("鱼香肉丝", load));
+            return loaded;
+        });
+        return days.get(yesterday).get("鱼香肉丝");
+    }
+}
@@ -0,0 +1,106 @@
+package com.sky.report;
+
+import com.sky.properties.ReportProperties;
+import com.sky.vo.ExportJobVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ReportExportJobsTest {
+
+    /**
+     * 启动时只删除导出任务遗留的文件，暂存目录中的其他文件保留
+     */
+    @Test
+    public void testInitDeletesOnlyJobFiles() throws Exception {
+        Path dir = Files.createTempDirectory("report-export");
+        String id = "0123456789abcdef0123456789abcdef";
+        Path temp = Files.createFile(dir.resolve(id + ".tmp"));
+        Path xlsx = Files.createFile(dir.resolve(id + ".xlsx"));
+        Path csv = Files.createFile(dir.resolve(id + ".csv"));
+        Path other = Files.createFile(dir.resolve("readme.txt"));
+        Path shortId = Files.createFile(dir.resolve("0123456789abcdef.csv"));
+
+        ReportProperties properties = new ReportProperties();
+        properties.getExport().setStagingDir(dir.toString());
+        ReportExportJobs jobs = new ReportExportJobs();
+        ReflectionTestUtils.setField(jobs, "reportProperties", properties);
+        try {
+            jobs.init();
+
+            assertFalse(Files.exists(temp));
+            assertFalse(Files.exists(xlsx));
+            assertFalse(Files.exists(csv));
+            assertTrue(Files.exists(other));
+            assertTrue(Files.exists(shortId));
+        } finally {
+            jobs.destroy();
+            Files.delete(other);
+            Files.delete(shortId);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * 连接器支持sendfile时只设置请求属性，由Tomcat发送文件；不支持时复制到响应输出流
+     */
+    @Test
+    public void testDownloadUsesSendfile() throws Exception {
+        Path dir = Files.createTempDirectory("report-export");
+        BusinessDataExporter exporter = mock(BusinessDataExporter.class);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write("a,b\r\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exporter).exportCsv(any(), any(), any(), any());
+
+        ReportProperties properties = new ReportProperties();
+        properties.getExport().setStagingDir(dir.toString());
+        ReportExportJobs jobs = new ReportExportJobs();
+        ReflectionTestUtils.setField(jobs, "reportProperties", properties);
+        ReflectionTestUtils.setField(jobs, "businessDataExporter", exporter);
+        jobs.init();
+        try {
+            LocalDate day = LocalDate.of(2024, 3, 1);
+            String id = jobs.submit(day, day, ReportExportJobs.CSV).getId();
+            for (int i = 0; i < 100 && !ReportExportJobs.SUCCEEDED.equals(jobs.get(id).getStatus()); i++) {
+                Thread.sleep(20);
+            }
+            ExportJobVO job = jobs.get(id);
+            assertEquals(ReportExportJobs.SUCCEEDED, job.getStatus());
+            Path file = dir.resolve(id + "." + ReportExportJobs.CSV);
+
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            jobs.download(id, request, response);
+            assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+            assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+            assertEquals(5L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+            assertEquals(5L, response.getContentLengthLong());
+            assertEquals(0, response.getContentAsByteArray().length);
+
+            response = new MockHttpServletResponse();
+            jobs.download(id, new MockHttpServletRequest(), response);
+            assertEquals("a,b\r\n", response.getContentAsString());
+
+            Files.delete(file);
+        } finally {
+            jobs.destroy();
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 汇总表重新计算与待写入增量的合并
+ */
+public class RollupReportDataSourceTest {
+
+    private final LocalDate yesterday = LocalDate.now().minusDays(1);
+
+    /**
+     * 订单表、用户表中的实际数据
+     */
+    private final Map<LocalDate, DailyBusinessStats> actual = new HashMap<>();
+
+    /**
+     * 汇总表
+     */
+    private final Map<LocalDate, DailyBusinessStats> rollup = new HashMap<>();
+
+    private final Map<Long, Orders> orders = new HashMap<>();
+
+    private RollupReportDataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        when(orderMapper.getById(anyLong())).thenAnswer(invocation -> orders.get(invocation.<Long>getArgument(0)));
+        when(orderMapper.statsGroupByDate(any(), any())).thenAnswer(invocation -> rows(actual,
+                invocation.<LocalDateTime>getArgument(0).toLocalDate(), invocation.<LocalDateTime>getArgument(1).toLocalDate()));
+        UserMapper userMapper = mock(UserMapper.class);
+        when(userMapper.countNewUsersGroupByDate(any(), any())).thenReturn(Collections.emptyList());
+        DailyBusinessStatsMapper dailyBusinessStatsMapper = mock(DailyBusinessStatsMapper.class);
+        doAnswer(invocation -> {
+            DailyBusinessStats delta = invocation.getArgument(0);
+            DailyStats.add(rollup.computeIfAbsent(delta.getStatDate(), DailyStats::empty), delta);
+            return null;
+        }).when(dailyBusinessStatsMapper).increment(any());
+        doAnswer(invocation -> {
+            DailyBusinessStats stats = invocation.getArgument(0);
+            rollup.put(stats.getStatDate(), copy(stats));
+            return null;
+        }).when(dailyBusinessStatsMapper).save(any());
+        when(dailyBusinessStatsMapper.getByDateRange(any(), any())).thenAnswer(invocation ->
+                rows(rollup, invocation.getArgument(0), invocation.getArgument(1)));
+        when(dailyBusinessStatsMapper.count()).thenAnswer(invocation -> rollup.size());
+
+        dataSource = new RollupReportDataSource();
+        ReflectionTestUtils.setField(dataSource, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(dataSource, "dailyBusinessStatsMapper", dailyBusinessStatsMapper);
+        ReflectionTestUtils.setField(dataSource, "reportProperties", new ReportProperties());
+        ReflectionTestUtils.setField(dataSource, RawReportDataSource.class, "orderMapper", orderMapper, null);
+        ReflectionTestUtils.setField(dataSource, RawReportDataSource.class, "userMapper", userMapper, null);
+    }
+
+    /**
+     * 重新计算结果已包含的待写入增量被丢弃，之后的增量照常累加
+     */
+    @Test
+    public void testRecomputeDropsPendingDelta() {
+        create(1L, yesterday);
+        dataSource.compact();
+        dataSource.flush();
+        assertEquals(1, rollup.get(yesterday).getTotalOrders());
+
+        create(2L, yesterday);
+        dataSource.flush();
+        assertEquals(2, rollup.get(yesterday).getTotalOrders());
+    }
+
+    /**
+     * 更早日期的订单发生流转后，凌晨连同前一天一起重新计算
+     */
+    @Test
+    public void testCompactRecomputesTouchedDays() {
+        LocalDate day = yesterday.minusDays(9);
+        create(1L, day);
+        dataSource.flush();
+        // 汇总表中的数据与实际数据出现偏差
+        rollup.get(day).setTotalOrders(5);
+
+        orders.get(1L).setStatus(Orders.CANCELLED);
+        actual.get(day).setToBeConfirmedOrders(0);
+        actual.get(day).setCancelledOrders(1);
+        dataSource.onTransition(1L, Orders.TO_BE_CONFIRMED, Orders.CANCELLED);
+        dataSource.compact();
+        dataSource.flush();
+
+        DailyBusinessStats stats = rollup.get(day);
+        assertEquals(1, stats.getTotalOrders());
+        assertEquals(0, stats.getToBeConfirmedOrders());
+        assertEquals(1, stats.getCancelledOrders());
+
+        // 已重新计算过的日期不再重复计算
+        stats.setTotalOrders(5);
+        dataSource.compact();
+        assertEquals(5, rollup.get(day).getTotalOrders());
+    }
+
+    /**
+     * 写入一个待接单的订单，同时通知汇总
+     */
+    private void create(Long id, LocalDate date) {
+        Orders order = Orders.builder()
+                .id(id)
+                .status(Orders.TO_BE_CONFIRMED)
+                .amount(new BigDecimal("20"))
+                .orderTime(date.atTime(12, 0))
+                .build();
+        orders.put(id, order);
+        DailyBusinessStats stats = actual.computeIfAbsent(date, DailyStats::empty);
+        stats.setTotalOrders(stats.getTotalOrders() + 1);
+        DailyStats.addStatus(stats, order.getStatus(), 1);
+        dataSource.onCreated(order);
+    }
+
+    private static List<DailyBusinessStats> rows(Map<LocalDate, DailyBusinessStats> days, LocalDate begin, LocalDate end) {
+        List<DailyBusinessStats> rows = new ArrayList<>();
+        days.forEach((date, stats) -> {
+            if (!date.isBefore(begin) && !date.isAfter(end)) {
+                rows.add(copy(stats));
+            }
+        });
+        return rows;
+    }
+
+    private static DailyBusinessStats copy(DailyBusinessStats stats) {
+        DailyBusinessStats copy = DailyStats.empty(stats.getStatDate());
+        DailyStats.add(copy, stats);
+        return copy;
+    }
+}
@@ -0,0 +1,88 @@
+package com.sky.service;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.benchmark.Timer;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 用户端历史订单：逐个订单查询明细与按页一次查询明细的耗时对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class OrderHistoryBenchmarkTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        // 订单最多的用户，每页都能取满
+        userId = jdbcTemplate.queryForObject("select user_id from orders group by user_id order by count(*) desc limit 1", Long.class);
+        BaseContext.setCurrentId(userId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    public void benchmarkPageQuery4User() {
+        for (int pageSize : new int[]{10, 20, 50}) {
+            Timer.compare("用户 " + userId + " 历史订单每页 " + pageSize + " 条",
+                    "逐个查询明细", () -> perOrder(pageSize),
+                    "按页查询明细", () -> orderIds(orderService.pageQuery4User(1, pageSize, null).getRecords()),
+                    Function.identity());
+        }
+    }
+
+    /**
+     * 原来的查询方式：分页查询订单后，每个订单单独查询一次明细
+     *
+     * @return 本页的订单id
+     */
+    private List<Long> perOrder(int pageSize) {
+        PageHelper.startPage(1, pageSize);
+        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+        ordersPageQueryDTO.setPage(1);
+        ordersPageQueryDTO.setPageSize(pageSize);
+        ordersPageQueryDTO.setUserId(userId);
+
+        Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO, null);
+        for (Orders orders : page) {
+            orderDetailMapper.getByOrderId(orders.getId());
+        }
+        return orderIds(page);
+    }
+
+    private static List<Long> orderIds(List<?> ordersList) {
+        return ordersList.stream().map(orders -> ((Orders) orders).getId()).collect(Collectors.toList());
+    }
+}
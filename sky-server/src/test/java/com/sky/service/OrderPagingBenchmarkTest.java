@@ -0,0 +1,120 @@
+package com.sky.service;
+
+import com.sky.benchmark.Timer;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.Orders;
+import com.sky.result.CursorPageResult;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 订单列表：第1页与第1000页在分页和游标两种方式下的耗时对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class OrderPagingBenchmarkTest {
+
+    /**
+     * 订单表不足100万行时为该用户生成压测订单，压测结束后删除该用户的订单
+     */
+    private static final long USER_ID = 990000003L;
+
+    private static final int ORDERS = 1_000_000;
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int DEEP_PAGE = 1000;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        int count = jdbcTemplate.queryForObject("select count(*) from orders", Integer.class);
+        if (count < ORDERS) {
+            jdbcTemplate.update("insert into orders (number, status, user_id, address_book_id, order_time, pay_method, pay_status, amount)"
+                    + " values (?, ?, ?, 0, ?, 1, 1, 20)", "bench0", Orders.COMPLETED, USER_ID, LocalDateTime.now().minusDays(1).withNano(0));
+            // 每轮复制一遍已生成的订单，下单时间整体前移，保证下单时间、订单号各不相同
+            for (int seeded = 1; count + seeded < ORDERS; seeded *= 2) {
+                jdbcTemplate.update("insert into orders (number, status, user_id, address_book_id, order_time, pay_method, pay_status, amount)"
+                        + " select concat('bench', unix_timestamp(order_time - interval ? second)), status, user_id, address_book_id,"
+                        + " order_time - interval ? second, pay_method, pay_status, amount from orders where user_id = ?",
+                        seeded, seeded, USER_ID);
+            }
+            log.info("已生成压测订单: {}", jdbcTemplate.queryForObject("select count(*) from orders where user_id = ?", Integer.class, USER_ID));
+        }
+
+        userId = jdbcTemplate.queryForObject("select user_id from orders group by user_id order by count(*) desc limit 1", Long.class);
+        BaseContext.setCurrentId(userId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+        jdbcTemplate.update("delete from orders where user_id = ?", USER_ID);
+    }
+
+    @Test
+    public void benchmarkConditionSearch() {
+        String cursor = walk(previous -> orderService.conditionSearchByCursor(query(1, previous)));
+        // 下单时间相同的订单在分页方式下顺序不固定，比较每行的下单时间
+        Timer.compare("商家订单第1页", "分页", () -> orderTimes(orderService.conditionSearch(query(1, null)).getRecords()),
+                "游标", () -> orderTimes(orderService.conditionSearchByCursor(query(1, null)).getRecords()),
+                Function.identity());
+        Timer.compare("商家订单第" + DEEP_PAGE + "页", "分页", () -> orderTimes(orderService.conditionSearch(query(DEEP_PAGE, null)).getRecords()),
+                "游标", () -> orderTimes(orderService.conditionSearchByCursor(query(1, cursor)).getRecords()),
+                Function.identity());
+    }
+
+    @Test
+    public void benchmarkUserHistory() {
+        String cursor = walk(previous -> orderService.cursorQuery4User(previous, PAGE_SIZE, null, false));
+        Timer.compare("用户 " + userId + " 历史订单第1页", "分页", () -> orderTimes(orderService.pageQuery4User(1, PAGE_SIZE, null).getRecords()),
+                "游标", () -> orderTimes(orderService.cursorQuery4User(null, PAGE_SIZE, null, false).getRecords()),
+                Function.identity());
+        Timer.compare("用户 " + userId + " 历史订单第" + DEEP_PAGE + "页", "分页", () -> orderTimes(orderService.pageQuery4User(DEEP_PAGE, PAGE_SIZE, null).getRecords()),
+                "游标", () -> orderTimes(orderService.cursorQuery4User(cursor, PAGE_SIZE, null, false).getRecords()),
+                Function.identity());
+    }
+
+    /**
+     * 从第1页开始逐页取游标，返回第1000页的游标
+     */
+    private static String walk(Function<String, CursorPageResult> next) {
+        String cursor = null;
+        for (int page = 1; page < DEEP_PAGE; page++) {
+            cursor = next.apply(cursor).getNextCursor();
+        }
+        return cursor;
+    }
+
+    private static OrdersPageQueryDTO query(int page, String cursor) {
+        OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
+        ordersPageQueryDTO.setPage(page);
+        ordersPageQueryDTO.setPageSize(PAGE_SIZE);
+        ordersPageQueryDTO.setCursor(cursor);
+        return ordersPageQueryDTO;
+    }
+
+    private static List<LocalDateTime> orderTimes(List<?> ordersList) {
+        return ordersList.stream().map(orders -> ((Orders) orders).getOrderTime()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,68 @@
+package com.sky.service;
+
+import com.sky.benchmark.Timer;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderReportVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 订单统计：按天逐条查询与一次分组查询的耗时对比，需要连接数据库：mvn test -Dbenchmark=true
+ */
+@SpringBootTest(properties = {"sky.report.source=raw", "sky.report.day-cache-enabled=false"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class OrderStatisticsBenchmarkTest {
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Test
+    public void benchmarkOrderStatistics() {
+        LocalDate end = LocalDate.now();
+        for (int days : new int[]{7, 30, 365}) {
+            LocalDate begin = end.minusDays(days - 1);
+            Timer.compare("订单统计 " + days + " 天",
+                    "按天查询", () -> perDay(begin, end),
+                    "分组查询", () -> totals(reportService.getOrderStatistics(begin, end)),
+                    Function.identity());
+        }
+    }
+
+    /**
+     * 原来的查询方式：每天分别查询一次订单总数和有效订单数
+     *
+     * @return 订单总数、有效订单数
+     */
+    private List<Integer> perDay(LocalDate begin, LocalDate end) {
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            // countByDateAndStatus的上下限都不包含，order_time精确到秒，前移一秒后与分组查询同样包含零点下单的订单
+            LocalDateTime beginTime = date.atStartOfDay().minusSeconds(1);
+            LocalDateTime endTime = date.plusDays(1).atStartOfDay();
+            totalOrderCount += count(orderMapper.countByDateAndStatus(beginTime, endTime, null));
+            validOrderCount += count(orderMapper.countByDateAndStatus(beginTime, endTime, Orders.COMPLETED));
+        }
+        return Arrays.asList(totalOrderCount, validOrderCount);
+    }
+
+    private static List<Integer> totals(OrderReportVO orderReportVO) {
+        return Arrays.asList(orderReportVO.getTotalOrderCount(), orderReportVO.getValidOrderCount());
+    }
+
+    private static int count(Integer count) {
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStateMachine;
+import com.sky.order.OrderTimeoutScheduler;
+import com.sky.websocket.WebSocketServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 支付通知的处理
+ */
+public class OrderServiceImplTest {
+
+    private OrderMapper orderMapper;
+
+    private OrderStateMachine orderStateMachine;
+
+    private WebSocketServer webSocketServer;
+
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    public void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        orderStateMachine = mock(OrderStateMachine.class);
+        webSocketServer = mock(WebSocketServer.class);
+        when(orderMapper.getByNumber("1")).thenReturn(Orders.builder().id(1L).number("1").build());
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(orderService, "orderStateMachine", orderStateMachine);
+        ReflectionTestUtils.setField(orderService, "orderTimeoutScheduler", mock(OrderTimeoutScheduler.class));
+        ReflectionTestUtils.setField(orderService, "webSocketServer", webSocketServer);
+    }
+
+    /**
+     * 订单已取消后才收到支付通知时标记为退款，不提醒商家接单
+     */
+    @Test
+    public void testPaymentForCancelledOrderMarkedRefund() {
+        when(orderStateMachine.tryFire(eq(1L), eq(OrderStateMachine.Transition.PAY), any())).thenReturn(false);
+        when(orderMapper.updatePayStatus(any(), eq(Orders.CANCELLED), eq(Orders.UN_PAID))).thenReturn(1);
+
+        orderService.paySuccess("1");
+
+        ArgumentCaptor<Orders> refund = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper).updatePayStatus(refund.capture(), eq(Orders.CANCELLED), eq(Orders.UN_PAID));
+        assertEquals(1L, refund.getValue().getId());
+        assertEquals(Orders.REFUND, refund.getValue().getPayStatus());
+        verify(webSocketServer, never()).sendToAllClient(anyString());
+    }
+
+    /**
+     * 待付款的订单正常支付，提醒商家接单
+     */
+    @Test
+    public void testPaymentForPendingOrder() {
+        when(orderStateMachine.tryFire(eq(1L), eq(OrderStateMachine.Transition.PAY), any())).thenReturn(true);
+
+        orderService.paySuccess("1");
+
+        verify(orderMapper, never()).updatePayStatus(any(), any(), any());
+        verify(webSocketServer).sendToAllClient(anyString());
+    }
+}
@@ -0,0 +1,110 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    /**
+     * 8个槽一圈80ms，更晚到期的任务需要经过多圈
+     */
+    private static final int WHEEL_SIZE = 8;
+
+    /**
+     * 到期时间与到期回调时的时间戳
+     */
+    private final BlockingQueue<long[]> expired = new LinkedBlockingQueue<>();
+
+    private HashedTimingWheel<Long> wheel;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new HashedTimingWheel<>("test-wheel", TICK_MILLIS, WHEEL_SIZE, keys -> {
+            long now = System.currentTimeMillis();
+            keys.forEach(key -> expired.add(new long[]{key, now}));
+        });
+        wheel.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        wheel.stop();
+    }
+
+    /**
+     * 任务按到期时间先后到期，已过期的任务在下一次推进时到期，超过一圈的任务经过剩余圈数后到期
+     */
+    @Test
+    public void testExpiry() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long[] deadlines = {now - 1000, now + 50, now + 300};
+        wheel.schedule(1L, deadlines[1]);
+        wheel.schedule(2L, deadlines[2]);
+        wheel.schedule(0L, deadlines[0]);
+        assertEquals(3, wheel.size());
+
+        List<Long> order = new ArrayList<>();
+        for (int i = 0; i < deadlines.length; i++) {
+            long[] entry = expired.poll(2, TimeUnit.SECONDS);
+            assertNotNull(entry, "任务未到期");
+            order.add(entry[0]);
+            // 按格推进，最多提前一格
+            assertTrue(entry[1] >= deadlines[(int) entry[0]] - TICK_MILLIS, "任务提前到期: " + entry[0]);
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L), order);
+        assertEquals(0, wheel.size());
+        assertNull(expired.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 取消的任务不再到期，已到期或不存在的任务取消返回false
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 50;
+        wheel.schedule(1L, deadline);
+        wheel.schedule(2L, deadline);
+        assertTrue(wheel.cancel(1L));
+        assertFalse(wheel.cancel(3L));
+
+        long[] entry = expired.poll(2, TimeUnit.SECONDS);
+        assertNotNull(entry);
+        assertEquals(2L, entry[0]);
+        assertNull(expired.poll(100, TimeUnit.MILLISECONDS));
+        assertFalse(wheel.cancel(2L));
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * 重复添加同一任务以最后一次为准，只到期一次
+     */
+    @Test
+    public void testReschedule() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        wheel.schedule(1L, now + 30);
+        wheel.schedule(1L, now + 150);
+        assertEquals(1, wheel.size());
+
+        long[] entry = expired.poll(2, TimeUnit.SECONDS);
+        assertNotNull(entry);
+        assertEquals(1L, entry[0]);
+        assertTrue(entry[1] >= now + 150 - TICK_MILLIS);
+        assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,115 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderNumberGeneratorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int IDS_PER_THREAD = 100000;
+
+    /**
+     * 多线程并发生成的号码不重复，且每个线程内严格递增
+     */
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        OrderNumberGenerator generator = new OrderNumberGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long last = -1;
+                    boolean increasing = true;
+                    for (int j = 0; j < IDS_PER_THREAD; j++) {
+                        long id = generator.nextId();
+                        increasing &= id > last;
+                        last = id;
+                        ids.add(id);
+                    }
+                    return increasing;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(60, TimeUnit.SECONDS), "同一线程内号码应严格递增");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size(), "号码不应重复");
+    }
+
+    /**
+     * 持续超出每毫秒容量时，号码中的时间戳最多领先时钟maxDriftMillis毫秒，超出后等待时钟推进
+     */
+    @Test
+    public void testDriftIsCapped() throws Exception {
+        AtomicLong clock = new AtomicLong(OrderNumberGenerator.EPOCH + 1000);
+        OrderNumberGenerator generator = new OrderNumberGenerator(1, 2) {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get();
+            }
+        };
+
+        // 当前毫秒和借用的2毫秒共 3 * 4096 个号码可以立即生成
+        long last = 0;
+        for (int i = 0; i < 3 * 4096; i++) {
+            last = generator.nextId();
+        }
+        assertEquals(clock.get() + 2, OrderNumberGenerator.extractTimestamp(last));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> blocked = executor.submit(generator::nextId);
+            Thread.sleep(200);
+            assertFalse(blocked.isDone(), "借用达到上限后应等待时钟推进");
+
+            clock.incrementAndGet();
+            long id = blocked.get(5, TimeUnit.SECONDS);
+            assertEquals(clock.get() + 2, OrderNumberGenerator.extractTimestamp(id));
+            assertTrue(id > last);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 时钟回拨时在上一次的时间戳上继续递增，不产生重复号码
+     */
+    @Test
+    public void testClockRollback() {
+        AtomicLong clock = new AtomicLong(OrderNumberGenerator.EPOCH + 5000);
+        OrderNumberGenerator generator = new OrderNumberGenerator(1) {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get();
+            }
+        };
+
+        long before = generator.nextId();
+        clock.addAndGet(-100);
+        long after = generator.nextId();
+        assertTrue(after > before);
+        assertEquals(OrderNumberGenerator.extractTimestamp(before), OrderNumberGenerator.extractTimestamp(after));
+    }
+}
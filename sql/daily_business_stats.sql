@@ -0,0 +1,18 @@
+-- 每日营业数据汇总表
+-- sky.report.source = rollup 时，报表和工作台的营业数据从该表读取，每天一行。
+-- 订单新增、状态流转和用户注册时增量更新（按订单下单日期、用户注册日期归属），
+-- 每天凌晨按订单表、用户表重新计算前一天的数据；表为空时启动会回填最近一年的数据。
+create table daily_business_stats
+(
+    stat_date                   date     not null comment '日期' primary key,
+    turnover                    bigint   not null default 0 comment '营业额（分），已完成订单的金额',
+    total_orders                int      not null default 0 comment '订单总数',
+    pending_payment_orders      int      not null default 0 comment '待付款订单数',
+    to_be_confirmed_orders      int      not null default 0 comment '待接单订单数',
+    confirmed_orders            int      not null default 0 comment '已接单订单数',
+    delivery_in_progress_orders int      not null default 0 comment '派送中订单数',
+    completed_orders            int      not null default 0 comment '已完成订单数',
+    cancelled_orders            int      not null default 0 comment '已取消订单数',
+    new_users                   int      not null default 0 comment '新增用户数',
+    update_time                 datetime null comment '更新时间'
+) comment '每日营业数据汇总';
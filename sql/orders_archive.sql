@@ -0,0 +1,7 @@
+-- 订单归档表
+-- 已完成、已取消且下单时间早于 sky.order.archive.age-days 天的订单，由归档任务从 orders、order_detail
+-- 分批迁移到以下结构相同的归档表中，线上表只保留近期订单。
+-- 用户历史订单、统计报表查询的时间范围早于归档边界时，会合并查询归档表。
+create table orders_archive like orders;
+
+create table order_detail_archive like order_detail;
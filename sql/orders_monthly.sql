@@ -0,0 +1,51 @@
+-- 订单按月分表
+-- 开启 sky.order.sharding.enabled 后，启动时会按 create table if not exists orders_yyyyMM like orders
+-- 自动创建从 first-month 到下个月的分表。分表模式下新订单的id取自订单号（Snowflake），
+-- 已有订单保留原自增id，按id查询时访问全部分表。
+-- 开启前停止写入订单，执行以下脚本把已有订单按下单时间迁移到对应月份的分表，
+-- 分表从最早的订单月份建到下个月，first-month 配置为脚本输出的最早月份。
+-- 脚本可以重复执行：已迁移的月份先清空再重新写入。
+drop procedure if exists migrate_orders_monthly;
+
+delimiter $$
+create procedure migrate_orders_monthly()
+begin
+    declare month_start date;
+    declare last_month date;
+    declare table_name varchar(32);
+
+    select date_format(coalesce(min(order_time), now()), '%Y-%m-01') into month_start from orders;
+    set last_month = date_format(date_add(now(), interval 1 month), '%Y-%m-01');
+    select date_format(month_start, '%Y%m') as first_month;
+
+    while month_start <= last_month do
+        set table_name = concat('orders_', date_format(month_start, '%Y%m'));
+
+        set @ddl = concat('create table if not exists ', table_name, ' like orders');
+        prepare stmt from @ddl;
+        execute stmt;
+        deallocate prepare stmt;
+
+        set @dml = concat('delete from ', table_name);
+        prepare stmt from @dml;
+        execute stmt;
+        deallocate prepare stmt;
+
+        set @dml = concat('insert into ', table_name, ' select * from orders where order_time >= ? and order_time < ?');
+        set @month_begin = month_start;
+        set @month_end = date_add(month_start, interval 1 month);
+        prepare stmt from @dml;
+        execute stmt using @month_begin, @month_end;
+        deallocate prepare stmt;
+
+        set month_start = date_add(month_start, interval 1 month);
+    end while;
+end $$
+delimiter ;
+
+call migrate_orders_monthly();
+
+drop procedure migrate_orders_monthly;
+
+-- 核对：各分表行数之和应等于 orders 的行数
+-- select count(*) from orders;
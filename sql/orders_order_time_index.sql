@@ -0,0 +1,6 @@
+-- 订单列表游标分页索引
+-- 游标分页按 (order_time desc, id desc) 排序，以 order_time < ? or (order_time = ? and id < ?) 定位下一页，
+-- 有序索引使任意深度的翻页都只扫描一页的行
+alter table orders
+    add index idx_order_time_id (order_time, id),
+    add index idx_user_order_time_id (user_id, order_time, id);
@@ -0,0 +1,5 @@
+-- 订单状态索引
+-- 按状态批量流转订单时以 where status = ? and id > ? order by id limit ? 分段遍历，
+-- (status, id) 索引使每段都只扫描本段的行，不随积压量增长
+alter table orders
+    add index idx_status_id (status, id);
@@ -0,0 +1,27 @@
+-- 购物车商品唯一键
+-- dish_id / setmeal_id / dish_flavor 可能为NULL，而唯一索引不约束NULL值，
+-- 因此先用存储生成列把NULL归一，再在 (user_id, item_key) 上建唯一键，
+-- 供 INSERT ... ON DUPLICATE KEY UPDATE 原子累加数量
+
+alter table shopping_cart
+    add column item_key varchar(100)
+        generated always as (concat(ifnull(dish_id, 0), ':', ifnull(setmeal_id, 0), ':', ifnull(dish_flavor, ''))) stored;
+
+-- 合并历史重复行：数量累加到id最小的一行，其余删除
+update shopping_cart sc
+    join (select min(id) as id, sum(number) as number
+          from shopping_cart
+          group by user_id, item_key
+          having count(*) > 1) dup on sc.id = dup.id
+set sc.number = dup.number;
+
+delete sc
+from shopping_cart sc
+    join (select user_id, item_key, min(id) as id
+          from shopping_cart
+          group by user_id, item_key
+          having count(*) > 1) dup
+        on sc.user_id = dup.user_id and sc.item_key = dup.item_key and sc.id > dup.id;
+
+alter table shopping_cart
+    add unique key uk_user_item (user_id, item_key);